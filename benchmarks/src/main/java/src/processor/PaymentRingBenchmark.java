@@ -0,0 +1,51 @@
+package src.processor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.model.PaymentRequest;
+
+// Handoff enqueuePayment -> dispatcher pelo PaymentRing
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentRingBenchmark {
+    private final PaymentRing ring = new PaymentRing(8192);
+    private long sequence;
+
+    @Benchmark
+    @Group("uncontended")
+    public PaymentRequest offerThenPoll() {
+        ring.offer(sequence, ~sequence, 1990, sequence++, 0);
+        return ring.poll();
+    }
+
+    // Vários produtores (thread do selector + retries) contra um consumidor, como em produção
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean produce() {
+        return ring.offer(1, 2, 1990, 0, 0);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public PaymentRequest consume() {
+        return ring.poll();
+    }
+}
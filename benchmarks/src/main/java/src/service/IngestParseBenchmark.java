@@ -0,0 +1,68 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Body do POST /payments: PaymentBodyScanner contra a busca por padrão antiga
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestParseBenchmark {
+    private final PaymentBodyScanner scanner = new PaymentBodyScanner();
+    private final PatternSearchBaseline baseline = new PatternSearchBaseline();
+
+    // Corpo real do k6 da Rinha e a variante com amount antes do id (pior caso da busca)
+    private byte[] body;
+    private byte[] amountFirstBody;
+    // Só o scanner aceita: espaços entre tokens
+    private byte[] prettyBody;
+
+    @Setup
+    public void setup() {
+        String id = UUID.randomUUID().toString();
+        body = ("{\"correlationId\":\"" + id + "\",\"amount\":19.90}").getBytes(StandardCharsets.UTF_8);
+        amountFirstBody = ("{\"amount\":19.90,\"correlationId\":\"" + id + "\"}").getBytes(StandardCharsets.UTF_8);
+        prettyBody = ("{\n  \"correlationId\": \"" + id + "\",\n  \"amount\": 19.90\n}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long scannerBody() {
+        return scanner.scan(body, body.length) ? scanner.amountCents : -1;
+    }
+
+    @Benchmark
+    public long scannerAmountFirstBody() {
+        return scanner.scan(amountFirstBody, amountFirstBody.length) ? scanner.amountCents : -1;
+    }
+
+    @Benchmark
+    public long scannerPrettyBody() {
+        return scanner.scan(prettyBody, prettyBody.length) ? scanner.amountCents : -1;
+    }
+
+    @Benchmark
+    public long patternSearchBody() {
+        return baseline.scan(body, body.length) ? baseline.amountCents : -1;
+    }
+
+    @Benchmark
+    public long patternSearchAmountFirstBody() {
+        return baseline.scan(amountFirstBody, amountFirstBody.length) ? baseline.amountCents : -1;
+    }
+}
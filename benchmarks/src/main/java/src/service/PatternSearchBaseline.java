@@ -0,0 +1,50 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+
+import src.model.Amounts;
+import src.model.Uuids;
+
+// Busca por padrão que o PostPaymentHandler usava antes do PaymentBodyScanner - só referência de benchmark
+final class PatternSearchBaseline {
+    private static final byte[] CORRELATION_PATTERN = "\"correlationId\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] AMOUNT_PATTERN = "\"amount\":".getBytes(StandardCharsets.UTF_8);
+
+    long idHigh;
+    long idLow;
+    long amountCents;
+
+    boolean scan(byte[] buffer, int totalRead) {
+        int idStart = indexOf(buffer, CORRELATION_PATTERN, totalRead);
+        if (idStart == -1) return false;
+        idStart += CORRELATION_PATTERN.length;
+        int idEnd = idStart;
+        while (idEnd < totalRead && buffer[idEnd] != '"') idEnd++;
+        if (idEnd == totalRead || !Uuids.isValid(buffer, idStart, idEnd)) return false;
+
+        int amountStart = indexOf(buffer, AMOUNT_PATTERN, totalRead);
+        if (amountStart == -1) return false;
+        amountStart += AMOUNT_PATTERN.length;
+        int amountEnd = amountStart;
+        while (amountEnd < totalRead && buffer[amountEnd] != ',' && buffer[amountEnd] != '}') amountEnd++;
+
+        idHigh = Uuids.high(buffer, idStart);
+        idLow = Uuids.low(buffer, idStart);
+        amountCents = Amounts.parseCents(buffer, amountStart, amountEnd);
+        return amountCents > 0;
+    }
+
+    private static int indexOf(byte[] array, byte[] target, int arrayLength) {
+        for (int i = 0; i <= arrayLength - target.length; i++) {
+            boolean found = true;
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    found = false;
+                    break;
+                }
+            }
+            if (found) return i;
+        }
+        return -1;
+    }
+}
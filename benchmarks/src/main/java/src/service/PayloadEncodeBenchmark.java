@@ -0,0 +1,41 @@
+package src.service;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.model.PaymentRequest;
+
+// Payload enviado ao processor (template do PaymentService)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadEncodeBenchmark {
+    private final byte[] buffer = new byte[PaymentPayloadEncoder.MAX_PAYLOAD];
+    private PaymentRequest payment;
+
+    @Setup
+    public void setup() {
+        UUID id = UUID.randomUUID();
+        payment = new PaymentRequest(id.getMostSignificantBits(), id.getLeastSignificantBits(), 1990,
+                System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int encodeTemplate() {
+        return PaymentPayloadEncoder.encode(payment, buffer);
+    }
+}
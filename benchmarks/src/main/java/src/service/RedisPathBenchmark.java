@@ -0,0 +1,78 @@
+package src.service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.model.PaymentProcessorSummary;
+
+// Caminhos do RedisAsyncManager (claim, record em lote, consulta do resumo) contra o RespStandIn
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisPathBenchmark {
+    // Uma rajada do tamanho de um lote do RedisBatchWriter
+    private static final int BURST = 128;
+
+    private RespStandIn standIn;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        standIn = new RespStandIn();
+        // Antes de qualquer acesso ao RedisAsyncManager - a conexão é aberta na inicialização da classe
+        System.setProperty("redis.uri", standIn.uri());
+        ids = new String[BURST];
+        for (int i = 0; i < BURST; i++) {
+            ids[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        standIn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void claimBurst() {
+        CompletableFuture<?>[] futures = new CompletableFuture[BURST];
+        for (int i = 0; i < BURST; i++) {
+            futures[i] = RedisAsyncManager.claimPayment(ids[i]);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void recordBurst() {
+        long now = System.currentTimeMillis();
+        CompletableFuture<?>[] futures = new CompletableFuture[BURST];
+        for (int i = 0; i < BURST; i++) {
+            futures[i] = RedisAsyncManager.recordPayment(ids[i], now, 1990, "default");
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public PaymentProcessorSummary[] summaryQuery() {
+        return PaymentSummaryEngine.query(Long.MIN_VALUE, Long.MAX_VALUE).join();
+    }
+}
@@ -0,0 +1,121 @@
+package src.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Servidor RESP2 mínimo em processo: responde os comandos que o
+ * RedisAsyncManager usa com valores fixos, sem estado. Tira a rede e o Redis
+ * real da medição - sobra o custo do nosso lado (Lettuce, batching, parsing).
+ */
+final class RespStandIn implements AutoCloseable {
+    private final ServerSocket server;
+
+    RespStandIn() throws IOException {
+        server = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "resp-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String uri() {
+        return "redis://127.0.0.1:" + server.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Thread worker = new Thread(() -> serve(socket), "resp-stand-in-conn");
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            while (true) {
+                String[] command = readCommand(in);
+                if (command == null) return;
+                reply(command, out);
+                if (in.available() == 0) out.flush(); // Pipelining: um flush por rajada
+            }
+        } catch (IOException ignored) {
+            // Cliente fechou
+        }
+    }
+
+    private static void reply(String[] command, OutputStream out) throws IOException {
+        switch (command[0].toUpperCase()) {
+            case "HELLO" -> write(out, "-ERR unknown command 'HELLO'\r\n");
+            case "PING" -> write(out, "+PONG\r\n");
+            case "GET" -> write(out, "$-1\r\n");
+            case "HGETALL" -> write(out, "*0\r\n");
+            case "MGET" -> {
+                StringBuilder sb = new StringBuilder().append('*').append(command.length - 1).append("\r\n");
+                for (int i = 1; i < command.length; i++) sb.append("$-1\r\n");
+                write(out, sb.toString());
+            }
+            case "EVAL", "EVALSHA" -> {
+                // Scripts em lote: um 1 por item (pares para claim, trincas para record)
+                int numKeys = Integer.parseInt(command[2]);
+                int perItem = numKeys > 1 && command[4].startsWith("claim:") ? 2 : 3;
+                int items = numKeys / perItem;
+                StringBuilder sb = new StringBuilder().append('*').append(items).append("\r\n");
+                for (int i = 0; i < items; i++) sb.append(":1\r\n");
+                write(out, sb.toString());
+            }
+            default -> write(out, "+OK\r\n");
+        }
+    }
+
+    private static String[] readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) return null;
+        if (first != '*') throw new IOException("inline commands not supported");
+        String[] args = new String[(int) readNumber(in)];
+        for (int i = 0; i < args.length; i++) {
+            if (in.read() != '$') throw new IOException("expected bulk string");
+            byte[] value = in.readNBytes((int) readNumber(in));
+            in.skipNBytes(2);
+            args[i] = new String(value, StandardCharsets.UTF_8);
+        }
+        return args;
+    }
+
+    // Lê até \r\n
+    private static long readNumber(InputStream in) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) throw new IOException("eof");
+            if (b == '-') negative = true;
+            else value = value * 10 + (b - '0');
+        }
+        in.read();
+        return negative ? -value : value;
+    }
+
+    private static void write(OutputStream out, String reply) throws IOException {
+        out.write(reply.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,34 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.model.PaymentProcessorSummary;
+
+// Corpo do GET /payments-summary, como o GetPaymentSummaryHandler monta
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryRenderBenchmark {
+    private final PaymentProcessorSummary[] summaries = {
+            new PaymentProcessorSummary(16_842, 33_515_580),
+            new PaymentProcessorSummary(1_204, 2_395_960) };
+
+    @Benchmark
+    public byte[] renderSummary() {
+        return PaymentSummaryEngine.toJson(summaries).getBytes(StandardCharsets.UTF_8);
+    }
+}
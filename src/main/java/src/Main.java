@@ -1,12 +1,25 @@
 package src;
 
 import src.service.PaymentApiServer;
+import src.service.PaymentJournal;
+import src.service.PaymentSummaryEngine;
 import src.processor.SimplePaymentProcessor;
 
 public class Main {
 
     public static void main(String[] args) throws Exception {
+        // --warmup-only: rodada de treino do AppCDS no build da imagem (sem Redis nem processors)
+        if (args.length > 0 && "--warmup-only".equals(args[0])) {
+            WarmUp.run(false);
+            System.exit(0);
+        }
+
         SimplePaymentProcessor.startHealthCheckMonitoring();
+        // Antes do dispatcher e da 8080: tráfego real só encontra código já compilado
+        WarmUp.run(true);
+        // Depois do warm-up (que zera agregado e filtro): o que esta instância já registrou volta do journal
+        PaymentJournal.open();
+        PaymentSummaryEngine.startSnapshot();
         SimplePaymentProcessor.startPaymentWorker();
         PaymentApiServer.start(8080);
     }
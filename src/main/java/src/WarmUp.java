@@ -0,0 +1,134 @@
+package src;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import src.http.HttpResponses;
+import src.http.NioHttpServer;
+import src.metrics.Metrics;
+import src.processor.SimplePaymentProcessor;
+import src.service.IdempotencyGuard;
+import src.service.PaymentApiServer;
+import src.service.PaymentService;
+import src.service.PaymentSummaryEngine;
+
+/**
+ * Aquece os caminhos quentes antes da 8080 abrir: POSTs sintéticos por
+ * loopback no servidor real (parser + ring), envio para um processor de
+ * mentira (payload + HttpClient) e consultas de resumo. Roda em rodadas até o
+ * JIT parar de compilar e depois zera todo estado que o tráfego falso deixou.
+ * Nada é gravado no Redis: o dispatcher (claim/record) ainda não está rodando.
+ */
+final class WarmUp {
+    private static final boolean ENABLED = !"false"
+            .equalsIgnoreCase(System.getenv().getOrDefault("WARMUP_ENABLED", "true"));
+    private static final long MAX_MS = Long.parseLong(System.getenv().getOrDefault("WARMUP_MAX_MS", "4000"));
+    private static final int BATCH = 256;
+    private static final int MIN_ROUNDS = 3;
+    // Rodada com menos que isso de compilação nova conta como "assentada"
+    private static final long SETTLED_COMPILE_MS = 5;
+    private static final int SETTLED_ROUNDS = 2;
+    private static final String SUMMARY_WINDOW = "/payments-summary?from=2000-01-01T00:00:00.000Z&to=2000-01-01T00:00:01.000Z";
+
+    private WarmUp() {
+    }
+
+    /** @param queryRedis false no treino do AppCDS (build da imagem, sem Redis) */
+    static void run(boolean queryRedis) throws Exception {
+        if (!ENABLED) return;
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        NioHttpServer processorStandIn = new NioHttpServer(new InetSocketAddress(loopback, 0))
+                .route("/payments", connection -> connection.send(HttpResponses.ACCEPTED));
+        NioHttpServer api = PaymentApiServer.create(new InetSocketAddress(loopback, 0));
+        processorStandIn.start();
+        api.start();
+
+        String processorUrl = "http://127.0.0.1:" + processorStandIn.localPort();
+        String apiUrl = "http://127.0.0.1:" + api.localPort();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean trackJit = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+        long deadline = System.nanoTime() + MAX_MS * 1_000_000;
+        try {
+            long lastCompileMs = trackJit ? jit.getTotalCompilationTime() : 0;
+            int rounds = 0;
+            int settled = 0;
+            while (System.nanoTime() < deadline) {
+                round(client, apiUrl, processorUrl, queryRedis);
+                rounds++;
+
+                if (trackJit) {
+                    long compileMs = jit.getTotalCompilationTime();
+                    settled = compileMs - lastCompileMs <= SETTLED_COMPILE_MS ? settled + 1 : 0;
+                    lastCompileMs = compileMs;
+                }
+                if (rounds >= MIN_ROUNDS && settled >= SETTLED_ROUNDS) break;
+            }
+        } finally {
+            api.stop();
+            processorStandIn.stop();
+            reset();
+        }
+    }
+
+    private static void round(HttpClient client, String apiUrl, String processorUrl, boolean queryRedis) {
+        URI payments = URI.create(apiUrl + "/payments");
+        List<CompletableFuture<?>> inFlight = new ArrayList<>(BATCH);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < BATCH; i++) {
+            String body = "{\"correlationId\":\"" + UUID.randomUUID() + "\",\"amount\":"
+                    + random.nextInt(1, 10_000) + "." + random.nextInt(10, 100) + "}";
+            inFlight.add(client.sendAsync(HttpRequest.newBuilder(payments)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        join(inFlight);
+
+        SimplePaymentProcessor.drainQueued(payment -> inFlight
+                .add(PaymentService.sendPaymentToProcessor(payment, processorUrl, 1000)));
+        join(inFlight);
+
+        inFlight.add(get(client, apiUrl + "/internal/payments-summary"));
+        if (queryRedis) {
+            // Snapshot ainda não sincronizou: as duas vão ao Redis (ou ao peer no modo peer)
+            inFlight.add(get(client, apiUrl + "/payments-summary"));
+            inFlight.add(get(client, apiUrl + SUMMARY_WINDOW));
+        }
+        join(inFlight);
+    }
+
+    private static CompletableFuture<?> get(HttpClient client, String url) {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static void join(List<CompletableFuture<?>> futures) {
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .exceptionally(throwable -> null) // Rodada com falha ainda aqueceu o que rodou
+                .join();
+        futures.clear();
+    }
+
+    // Tudo que o tráfego sintético tocou volta ao estado de boot
+    private static void reset() {
+        SimplePaymentProcessor.drainQueued(payment -> {
+        });
+        IdempotencyGuard.reset();
+        PaymentSummaryEngine.resetLocal();
+        Metrics.reset();
+    }
+}
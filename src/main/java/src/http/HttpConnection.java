@@ -0,0 +1,376 @@
+package src.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * Uma conexão keep-alive do NioHttpServer. Também é a visão do request atual
+ * (método, path, query, body) e o canal de resposta passado aos handlers.
+ * Buffers de leitura/escrita são diretos e reaproveitados por toda a vida da
+ * conexão; o body é copiado para um byte[] reutilizado.
+ */
+public final class HttpConnection {
+    private static final int IN_CAPACITY = 16 * 1024;
+    private static final int OUT_CAPACITY = 16 * 1024;
+    private static final int MAX_BODY = 8 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = HttpResponses.ascii("content-length");
+    private static final byte[] CONNECTION = HttpResponses.ascii("connection");
+    private static final byte[] CLOSE = HttpResponses.ascii("close");
+    private static final byte[] KEEP_ALIVE = HttpResponses.ascii("keep-alive");
+    private static final byte[] HTTP_1_0 = HttpResponses.ascii("HTTP/1.0");
+
+    private final NioHttpServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(IN_CAPACITY);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(OUT_CAPACITY);
+    // Só usado quando uma resposta não cabe no buffer de saída
+    private final ArrayDeque<ByteBuffer> overflow = new ArrayDeque<>(0);
+    private final byte[] body = new byte[MAX_BODY];
+    private final byte[] digits = new byte[20];
+
+    // Request atual (índices absolutos em 'in')
+    private int methodStart, methodEnd;
+    private int pathStart, pathEnd;
+    private int queryStart, queryEnd;
+    private int bodyLength;
+    private boolean closeAfterResponse;
+
+    private boolean awaitingResponse;
+    private boolean dispatching;
+    private boolean closed;
+
+    HttpConnection(NioHttpServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    // ===== Visão do request =====
+
+    public boolean isMethod(byte[] method) {
+        return equalsAt(methodStart, methodEnd, method);
+    }
+
+    public boolean pathEquals(byte[] path) {
+        return equalsAt(pathStart, pathEnd, path);
+    }
+
+    /** Query string crua (sem '?') ou null. Válida só durante handle(); aloca - fora do caminho quente. */
+    public String query() {
+        if (queryStart == queryEnd) return null;
+        byte[] raw = new byte[queryEnd - queryStart];
+        in.get(queryStart, raw);
+        return new String(raw, StandardCharsets.US_ASCII);
+    }
+
+    /** Body do request atual. Válido só durante handle() - o array é reutilizado. */
+    public byte[] body() {
+        return body;
+    }
+
+    public int bodyLength() {
+        return bodyLength;
+    }
+
+    // ===== Respostas =====
+
+    /** Resposta completa já codificada (status + headers + body). */
+    public void send(byte[] preEncoded) {
+        if (!server.inSelectorThread()) {
+            server.runOnSelector(() -> send(preEncoded));
+            return;
+        }
+        if (closed) return;
+        enqueue(preEncoded, 0, preEncoded.length);
+        completeResponse();
+    }
+
+    public void sendJson(byte[] json) {
+        sendJson(json, json.length);
+    }
+
+    public void sendJson(byte[] json, int length) {
+        sendBody(HttpResponses.JSON_HEAD, null, json, length);
+    }
+
+    /** JSON com um header extra (de HttpResponses.header). */
+    public void sendJson(byte[] json, byte[] extraHeader) {
+        sendBody(HttpResponses.JSON_HEAD, extraHeader, json, json.length);
+    }
+
+    /** 200 text/plain (formato de exposição do Prometheus). */
+    public void sendText(byte[] text) {
+        sendBody(HttpResponses.TEXT_HEAD, null, text, text.length);
+    }
+
+    private void sendBody(byte[] head, byte[] extraHeader, byte[] body, int length) {
+        if (!server.inSelectorThread()) {
+            server.runOnSelector(() -> sendBody(head, extraHeader, body, length));
+            return;
+        }
+        if (closed) return;
+        enqueue(head, 0, head.length);
+        if (extraHeader != null) enqueue(extraHeader, 0, extraHeader.length);
+        enqueue(HttpResponses.CONTENT_LENGTH, 0, HttpResponses.CONTENT_LENGTH.length);
+        int n = writeDigits(length);
+        enqueue(digits, digits.length - n, n);
+        enqueue(HttpResponses.HEADERS_END, 0, HttpResponses.HEADERS_END.length);
+        enqueue(body, 0, length);
+        completeResponse();
+    }
+
+    // ===== I/O (thread do selector) =====
+
+    void onReadable() throws IOException {
+        int read = channel.read(in);
+        if (read == -1) {
+            close();
+            return;
+        }
+        processBuffered();
+    }
+
+    void onWritable() throws IOException {
+        if (flush()) {
+            if (closeAfterResponse) {
+                close();
+                return;
+            }
+            key.interestOps(awaitingResponse ? 0 : SelectionKey.OP_READ);
+            if (!awaitingResponse) processBuffered();
+        }
+    }
+
+    // Processa todos os requests completos já no buffer (pipelining incluso)
+    private void processBuffered() throws IOException {
+        int consumed = 0;
+        int limit = in.position();
+
+        while (!awaitingResponse && !closed) {
+            int headersEnd = indexOfHeadersEnd(consumed, limit);
+            if (headersEnd == -1) {
+                if (consumed == 0 && limit == in.capacity()) {
+                    closeAfterResponse = true;
+                    send(HttpResponses.REQUEST_TOO_LARGE);
+                    return;
+                }
+                break;
+            }
+
+            int contentLength = parseHead(consumed, headersEnd);
+            if (contentLength < 0 || contentLength > MAX_BODY) {
+                closeAfterResponse = true;
+                send(HttpResponses.BAD_REQUEST);
+                return;
+            }
+
+            int bodyStart = headersEnd + 4;
+            if (bodyStart + contentLength > limit) {
+                break; // Body ainda chegando
+            }
+
+            in.get(bodyStart, body, 0, contentLength);
+            bodyLength = contentLength;
+            consumed = bodyStart + contentLength;
+
+            awaitingResponse = true;
+            dispatching = true;
+            try {
+                server.dispatch(this);
+            } finally {
+                dispatching = false;
+            }
+        }
+
+        if (closed) return;
+
+        // Compacta o que sobrou (request parcial ou pipelined aguardando)
+        if (consumed > 0) {
+            in.flip();
+            in.position(consumed);
+            in.compact();
+        }
+        if (awaitingResponse && key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+            key.interestOps(0); // Segura novas leituras até a resposta sair
+        }
+    }
+
+    /** Retorna Content-Length (0 se ausente) ou -1 se o request for inválido. */
+    private int parseHead(int start, int headersEnd) {
+        // Request line: METHOD SP target SP version
+        int sp1 = indexOf((byte) ' ', start, headersEnd);
+        if (sp1 <= start) return -1;
+        int sp2 = indexOf((byte) ' ', sp1 + 1, headersEnd);
+        if (sp2 == -1) return -1;
+        int lineEnd = indexOf((byte) '\r', sp2, headersEnd);
+        if (lineEnd == -1) lineEnd = headersEnd;
+
+        methodStart = start;
+        methodEnd = sp1;
+        pathStart = sp1 + 1;
+        int q = indexOf((byte) '?', pathStart, sp2);
+        if (q == -1) {
+            pathEnd = sp2;
+            queryStart = queryEnd = sp2;
+        } else {
+            pathEnd = q;
+            queryStart = q + 1;
+            queryEnd = sp2;
+        }
+        boolean http10 = equalsAt(sp2 + 1, lineEnd, HTTP_1_0);
+        closeAfterResponse = http10;
+
+        int contentLength = 0;
+        int lineStart = lineEnd + 2;
+        while (lineStart < headersEnd) {
+            int end = indexOf((byte) '\r', lineStart, headersEnd);
+            if (end == -1) end = headersEnd;
+            int colon = indexOf((byte) ':', lineStart, end);
+            if (colon > lineStart) {
+                int valueStart = colon + 1;
+                while (valueStart < end && in.get(valueStart) == ' ') valueStart++;
+                int valueEnd = end;
+                while (valueEnd > valueStart && in.get(valueEnd - 1) == ' ') valueEnd--;
+
+                if (equalsIgnoreCaseAt(lineStart, colon, CONTENT_LENGTH)) {
+                    contentLength = parseInt(valueStart, valueEnd);
+                    if (contentLength < 0) return -1;
+                } else if (equalsIgnoreCaseAt(lineStart, colon, CONNECTION)) {
+                    if (equalsIgnoreCaseAt(valueStart, valueEnd, CLOSE)) closeAfterResponse = true;
+                    else if (equalsIgnoreCaseAt(valueStart, valueEnd, KEEP_ALIVE)) closeAfterResponse = false;
+                }
+            }
+            lineStart = end + 2;
+        }
+        return contentLength;
+    }
+
+    private void completeResponse() {
+        awaitingResponse = false;
+        try {
+            if (!flush()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (closeAfterResponse) {
+                close();
+                return;
+            }
+            if (!dispatching) {
+                // Resposta assíncrona: volta a ler e processa o que ficou no buffer
+                key.interestOps(SelectionKey.OP_READ);
+                processBuffered();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void enqueue(byte[] src, int offset, int length) {
+        if (!overflow.isEmpty()) {
+            overflow.add(ByteBuffer.wrap(src.clone(), offset, length));
+            return;
+        }
+        int room = out.remaining();
+        if (length <= room) {
+            out.put(src, offset, length);
+            return;
+        }
+        out.put(src, offset, room);
+        byte[] rest = new byte[length - room];
+        System.arraycopy(src, offset + room, rest, 0, rest.length);
+        overflow.add(ByteBuffer.wrap(rest));
+    }
+
+    /** true quando tudo foi escrito. */
+    private boolean flush() throws IOException {
+        out.flip();
+        channel.write(out);
+        boolean drained = !out.hasRemaining();
+        out.compact();
+
+        while (drained && !overflow.isEmpty()) {
+            ByteBuffer next = overflow.peek();
+            channel.write(next);
+            if (next.hasRemaining()) {
+                drained = false;
+            } else {
+                overflow.poll();
+            }
+        }
+        return drained;
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ===== Helpers de bytes (sem alocação) =====
+
+    private int indexOfHeadersEnd(int from, int limit) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (in.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    private boolean equalsAt(int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (in.get(start + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCaseAt(int start, int end, byte[] lowerExpected) {
+        if (end - start != lowerExpected.length) return false;
+        for (int i = 0; i < lowerExpected.length; i++) {
+            int b = in.get(start + i);
+            if (b >= 'A' && b <= 'Z') b += 32;
+            if (b != lowerExpected[i]) return false;
+        }
+        return true;
+    }
+
+    private int parseInt(int start, int end) {
+        if (start == end || end - start > 9) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = in.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private int writeDigits(int value) {
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        return digits.length - pos;
+    }
+}
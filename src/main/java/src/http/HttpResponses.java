@@ -0,0 +1,34 @@
+package src.http;
+
+import java.nio.charset.StandardCharsets;
+
+// Respostas e cabeçalhos pré-codificados - nada é montado por request
+public final class HttpResponses {
+    public static final byte[] ACCEPTED = status("202 Accepted");
+    public static final byte[] BAD_REQUEST = status("400 Bad Request");
+    public static final byte[] NOT_FOUND = status("404 Not Found");
+    public static final byte[] REQUEST_TOO_LARGE = status("431 Request Header Fields Too Large");
+    public static final byte[] INTERNAL_ERROR = status("500 Internal Server Error");
+
+    static final byte[] JSON_HEAD = ascii("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n");
+    static final byte[] TEXT_HEAD = ascii(
+            "HTTP/1.1 200 OK\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\n");
+    static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+    static final byte[] HEADERS_END = ascii("\r\n\r\n");
+
+    private HttpResponses() {
+    }
+
+    /** Linha de header pré-codificada para sendJson(json, extraHeader). */
+    public static byte[] header(String name, String value) {
+        return ascii(name + ": " + value + "\r\n");
+    }
+
+    private static byte[] status(String status) {
+        return ascii("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n\r\n");
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,169 @@
+package src.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Servidor HTTP/1.1 não bloqueante sobre um único Selector (epoll no Linux).
+ * Conexões keep-alive (o pool upstream do nginx) ficam abertas e cada uma
+ * reaproveita seus buffers; rotas são comparadas direto nos bytes do path.
+ */
+public final class NioHttpServer {
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    private final InetSocketAddress address;
+    private byte[][] routePaths = new byte[0][];
+    private RequestHandler[] routeHandlers = new RequestHandler[0];
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public NioHttpServer(int port) {
+        this(new InetSocketAddress(port));
+    }
+
+    public NioHttpServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /** Registra uma rota por path exato (sem query). Chamar antes de start(). */
+    public NioHttpServer route(String path, RequestHandler handler) {
+        int n = routePaths.length;
+        byte[][] paths = new byte[n + 1][];
+        RequestHandler[] handlers = new RequestHandler[n + 1];
+        System.arraycopy(routePaths, 0, paths, 0, n);
+        System.arraycopy(routeHandlers, 0, handlers, 0, n);
+        paths[n] = path.getBytes(StandardCharsets.US_ASCII);
+        handlers[n] = handler;
+        routePaths = paths;
+        routeHandlers = handlers;
+        return this;
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "http-selector");
+        selectorThread.start();
+    }
+
+    /** Porta efetiva (útil com porta 0). */
+    public int localPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /** Fecha o listener e todas as conexões; a thread do selector termina. */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    boolean inSelectorThread() {
+        return Thread.currentThread() == selectorThread;
+    }
+
+    /** Executa na thread do selector - usado pelas respostas assíncronas. */
+    void runOnSelector(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void dispatch(HttpConnection connection) {
+        for (int i = 0; i < routePaths.length; i++) {
+            if (connection.pathEquals(routePaths[i])) {
+                try {
+                    routeHandlers[i].handle(connection);
+                } catch (Exception e) {
+                    connection.send(HttpResponses.INTERNAL_ERROR);
+                }
+                return;
+            }
+        }
+        connection.send(HttpResponses.NOT_FOUND);
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handleKey(key);
+                }
+            } catch (Exception ignored) {
+                // Loop do selector nunca pode morrer
+            }
+        }
+        closeAll();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection connection) connection.close();
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) return;
+
+        if (key.isAcceptable()) {
+            accept((ServerSocketChannel) key.channel());
+            return;
+        }
+
+        HttpConnection connection = (HttpConnection) key.attachment();
+        try {
+            if (key.isWritable()) {
+                connection.onWritable();
+            } else if (key.isReadable()) {
+                connection.onReadable();
+            }
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) {
+        SocketChannel channel;
+        try {
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new HttpConnection(this, channel, key));
+            }
+        } catch (IOException ignored) {
+            // Conexão individual que falhou no accept
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package src.http;
+
+/**
+ * Handler de uma rota do NioHttpServer. Roda na thread do selector: precisa ser
+ * curto e não bloquear. Pode responder depois, de outra thread, pelo próprio
+ * HttpConnection - o próximo request da conexão só é lido após a resposta.
+ */
+@FunctionalInterface
+public interface RequestHandler {
+    void handle(HttpConnection connection) throws Exception;
+}
@@ -0,0 +1,27 @@
+package src.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Contador listrado (LongAdder): incremento sem disputa de cache line entre threads
+public final class Counter {
+    private final LongAdder adder = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        adder.increment();
+    }
+
+    public void add(long delta) {
+        adder.add(delta);
+    }
+
+    void reset() {
+        adder.reset();
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,62 @@
+package src.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latência com buckets em potências de 2 (em nanos): o índice
+ * sai de um numberOfLeadingZeros, o registro é um incremento atômico - sem
+ * lock, sem alocação. Precisão de 2x, suficiente para achar gargalo.
+ */
+public final class LatencyHistogram {
+    // Faixa exposta: 2^10 ns (~1us) até 2^35 ns (~34s); fora disso cai nas pontas
+    static final int MIN_EXPONENT = 10;
+    static final int MAX_EXPONENT = 35;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(65);
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+    }
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) nanos = 0;
+        // Menor i com nanos <= 2^i - casa com a semântica "le" do Prometheus
+        int index = nanos <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(nanos - 1);
+        buckets.incrementAndGet(index);
+        sumNanos.add(nanos);
+    }
+
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        sumNanos.reset();
+    }
+
+    void render(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        for (int i = 0; i < MIN_EXPONENT; i++) {
+            cumulative += buckets.get(i);
+        }
+        for (int exponent = MIN_EXPONENT; exponent <= MAX_EXPONENT; exponent++) {
+            cumulative += buckets.get(exponent);
+            out.append(name).append("_bucket{");
+            if (!labels.isEmpty()) out.append(labels).append(',');
+            out.append("le=\"").append((1L << exponent) / 1e9).append("\"} ").append(cumulative).append('\n');
+        }
+        for (int i = MAX_EXPONENT + 1; i < buckets.length(); i++) {
+            cumulative += buckets.get(i);
+        }
+        out.append(name).append("_bucket{");
+        if (!labels.isEmpty()) out.append(labels).append(',');
+        out.append("le=\"+Inf\"} ").append(cumulative).append('\n');
+
+        Metrics.sample(out, name + "_sum", labels).append(sumNanos.sum() / 1e9).append('\n');
+        Metrics.sample(out, name + "_count", labels).append(cumulative).append('\n');
+    }
+}
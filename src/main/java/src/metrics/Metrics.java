@@ -0,0 +1,104 @@
+package src.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro dos instrumentos expostos em /metrics (formato texto do Prometheus).
+ * Cada classe cria os seus como static final na inicialização; o caminho
+ * quente só toca o instrumento, o registro só é lido no scrape.
+ */
+public final class Metrics {
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final List<String> labels = new ArrayList<>();
+        final List<Object> series = new ArrayList<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final Map<String, Family> families = new LinkedHashMap<>();
+
+    private Metrics() {
+    }
+
+    /** labels no formato Prometheus sem chaves, ex.: processor="default" (ou ""). */
+    public static Counter counter(String name, String help, String labels) {
+        Counter counter = new Counter();
+        register(name, help, "counter", labels, counter);
+        return counter;
+    }
+
+    public static LatencyHistogram histogram(String name, String help, String labels) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        register(name, help, "histogram", labels, histogram);
+        return histogram;
+    }
+
+    // Valor lido só no scrape (profundidade de fila, limite de concorrência...)
+    public static void gauge(String name, String help, String labels, LongSupplier value) {
+        register(name, help, "gauge", labels, value);
+    }
+
+    // Gauge fracionário - para valores em unidade base (segundos) que o long truncaria
+    public static void doubleGauge(String name, String help, String labels, DoubleSupplier value) {
+        register(name, help, "gauge", labels, value);
+    }
+
+    public static synchronized byte[] scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (int i = 0; i < family.series.size(); i++) {
+                Object instrument = family.series.get(i);
+                String labels = family.labels.get(i);
+                if (instrument instanceof LatencyHistogram histogram) {
+                    histogram.render(out, family.name, labels);
+                } else if (instrument instanceof Counter counter) {
+                    sample(out, family.name, labels).append(counter.get()).append('\n');
+                } else if (instrument instanceof DoubleSupplier gauge) {
+                    sample(out, family.name, labels).append(gauge.getAsDouble()).append('\n');
+                } else {
+                    sample(out, family.name, labels).append(((LongSupplier) instrument).getAsLong()).append('\n');
+                }
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Zera todos os contadores e histogramas (fim do warm-up); gauges são lidos ao vivo. */
+    public static synchronized void reset() {
+        for (Family family : families.values()) {
+            for (Object instrument : family.series) {
+                if (instrument instanceof LatencyHistogram histogram) histogram.reset();
+                else if (instrument instanceof Counter counter) counter.reset();
+            }
+        }
+    }
+
+    static StringBuilder sample(StringBuilder out, String name, String labels) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        return out.append(' ');
+    }
+
+    private static synchronized void register(String name, String help, String type, String labels,
+            Object instrument) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) throw new IllegalArgumentException(name + " already registered as " + family.type);
+        family.labels.add(labels);
+        family.series.add(instrument);
+    }
+}
@@ -0,0 +1,57 @@
+package src.model;
+
+// Valores monetários em centavos (long) - sem String/BigDecimal no caminho quente
+public final class Amounts {
+    public static final long INVALID = -1;
+    // Maior valor de um pagamento: cabe nos 5 bytes do ledger no Redis (o journal guarda 56 bits)
+    public static final long MAX_CENTS = (1L << 40) - 1;
+
+    private Amounts() {
+    }
+
+    /**
+     * Converte bytes ASCII ("19.9", "19.90", "20") em centavos. Aceita aspas em
+     * volta do número. Retorna INVALID para qualquer coisa fora desse formato.
+     */
+    public static long parseCents(byte[] buf, int start, int end) {
+        if (start < end && buf[start] == '"') start++;
+        if (end > start && buf[end - 1] == '"') end--;
+        if (start >= end) return INVALID;
+
+        long units = 0;
+        int i = start;
+        for (; i < end && buf[i] != '.'; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9 || units > Long.MAX_VALUE / 1000) return INVALID;
+            units = units * 10 + d;
+        }
+        if (i == start) return INVALID;
+
+        long fraction = 0;
+        int digits = 0;
+        if (i < end) {
+            i++; // '.'
+            for (; i < end; i++) {
+                int d = buf[i] - '0';
+                if (d < 0 || d > 9) return INVALID;
+                // Além de 2 casas só aceita zeros (ex: "19.900")
+                if (digits >= 2) {
+                    if (d != 0) return INVALID;
+                    continue;
+                }
+                fraction = fraction * 10 + d;
+                digits++;
+            }
+            if (digits == 0) return INVALID;
+        }
+        if (digits == 1) fraction *= 10;
+        return units * 100 + fraction;
+    }
+
+    // "1990" -> "19.90"
+    public static String toDecimalString(long cents) {
+        long units = cents / 100;
+        int fraction = (int) (cents % 100);
+        return units + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
@@ -1,18 +1,17 @@
 package src.model;
 
-import java.math.BigDecimal;
-
 public class PaymentProcessorSummary {
     public long totalRequests;
-    public BigDecimal totalAmount;
+    public long totalAmountCents;
 
-    public PaymentProcessorSummary(long totalRequests, BigDecimal totalAmount) {
+    public PaymentProcessorSummary(long totalRequests, long totalAmountCents) {
         this.totalRequests = totalRequests;
-        this.totalAmount = totalAmount;
+        this.totalAmountCents = totalAmountCents;
     }
 
     @Override
     public String toString() {
-        return "PaymentProcessorSummary [totalRequests=" + totalRequests + ", totalAmount=" + totalAmount + "]";
+        return "PaymentProcessorSummary [totalRequests=" + totalRequests + ", totalAmount="
+                + Amounts.toDecimalString(totalAmountCents) + "]";
     }
 }
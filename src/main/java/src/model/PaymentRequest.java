@@ -1,15 +1,22 @@
 package src.model;
 
-import java.time.Instant;
-
+// Só primitivos: o correlationId vira String apenas onde o Redis exige
 public class PaymentRequest {
-    public String correlationId;
-    public String amount;
-    public String requestedAt;
+    public final long idHigh;
+    public final long idLow;
+    public final long amountCents;
+    public final long requestedAtMillis;
+    // Tentativas de envio que já falharam (backoff do RetryScheduler)
+    public int attempts;
+
+    public PaymentRequest(long idHigh, long idLow, long amountCents, long requestedAtMillis) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.amountCents = amountCents;
+        this.requestedAtMillis = requestedAtMillis;
+    }
 
-    public PaymentRequest(String correlationId, String amount) {
-        this.correlationId = correlationId;
-        this.amount = amount;
-        this.requestedAt = Instant.now().toString();
+    public String correlationId() {
+        return Uuids.toString(idHigh, idLow);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package src.model;
+
+// Resultado do GET /payments/service-health, compartilhado entre instâncias via Redis
+public class ProcessorHealth {
+    public final boolean failing;
+    public final int minResponseTime;
+    public final long checkedAtMillis;
+
+    public ProcessorHealth(boolean failing, int minResponseTime, long checkedAtMillis) {
+        this.failing = failing;
+        this.minResponseTime = minResponseTime;
+        this.checkedAtMillis = checkedAtMillis;
+    }
+
+    // "failing|minResponseTime|checkedAt" - cabe numa string curta no Redis
+    public String encode() {
+        return (failing ? "1" : "0") + "|" + minResponseTime + "|" + checkedAtMillis;
+    }
+
+    public static ProcessorHealth decode(String value) {
+        if (value == null) return null;
+        try {
+            int a = value.indexOf('|');
+            int b = value.indexOf('|', a + 1);
+            return new ProcessorHealth(value.charAt(0) == '1', Integer.parseInt(value.substring(a + 1, b)),
+                    Long.parseLong(value.substring(b + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessorHealth [failing=" + failing + ", minResponseTime=" + minResponseTime + ", checkedAt="
+                + checkedAtMillis + "]";
+    }
+}
@@ -0,0 +1,91 @@
+package src.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// correlationId como dois longs (UUID) - sem String no caminho quente
+public final class Uuids {
+    public static final int TEXT_LENGTH = 36;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // Byte -> valor hex (-1 se não for dígito hex), uma leitura em vez de três comparações. Só minúsculo:
+    // o id volta ao processor e ao Redis pelo write(), e maiúsculo viraria outro correlationId
+    private static final byte[] HEX_VALUES = new byte[256];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX_VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) HEX_VALUES['a' + i] = (byte) (10 + i);
+    }
+
+    private Uuids() {
+    }
+
+    /** true se buf[start, start+36) é um UUID canônico (8-4-4-4-12, hex minúsculo). */
+    public static boolean isValid(byte[] buf, int start, int end) {
+        if (end - start != TEXT_LENGTH) return false;
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            byte b = buf[start + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') return false;
+            } else if (hexValue(b) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 64 bits altos - chamar só depois de isValid. */
+    public static long high(byte[] buf, int start) {
+        long value = parseHex(buf, start, 0, 8);
+        value = (value << 16) | parseHex(buf, start, 9, 13);
+        return (value << 16) | parseHex(buf, start, 14, 18);
+    }
+
+    /** 64 bits baixos - chamar só depois de isValid. */
+    public static long low(byte[] buf, int start) {
+        long value = parseHex(buf, start, 19, 23);
+        return (value << 48) | parseHex(buf, start, 24, 36);
+    }
+
+    /** Escreve a forma canônica (minúscula, 36 bytes) e retorna a nova posição. */
+    public static int write(long high, long low, byte[] dst, int pos) {
+        pos = writeHex(high >>> 32, 8, dst, pos);
+        dst[pos++] = '-';
+        pos = writeHex(high >>> 16, 4, dst, pos);
+        dst[pos++] = '-';
+        pos = writeHex(high, 4, dst, pos);
+        dst[pos++] = '-';
+        pos = writeHex(low >>> 48, 4, dst, pos);
+        dst[pos++] = '-';
+        return writeHex(low, 12, dst, pos);
+    }
+
+    // Só onde o Redis precisa de String (chaves de claim/ledger)
+    public static String toString(long high, long low) {
+        byte[] text = new byte[TEXT_LENGTH];
+        write(high, low, text, 0);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    private static long parseHex(byte[] buf, int start, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = (value << 4) | hexValue(buf[start + i]);
+        }
+        return value;
+    }
+
+    private static int writeHex(long value, int digits, byte[] dst, int pos) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[pos + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return pos + digits;
+    }
+
+    /** Valor do dígito hex minúsculo ou -1. */
+    public static int hexValue(byte b) {
+        return HEX_VALUES[b & 0xFF];
+    }
+}
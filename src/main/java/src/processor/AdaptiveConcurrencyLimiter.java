@@ -0,0 +1,110 @@
+package src.processor;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite de envios em voo por processor, ajustado por AIMD: cada resposta
+ * rápida soma 1/limite (≈ +1 por RTT), erro ou latência acima de
+ * LATENCY_TOLERANCE x a menor latência recente multiplica por BACKOFF_RATIO.
+ *
+ * A "menor latência recente" é o mínimo de uma janela de duas metades de
+ * BASELINE_WINDOW_MS: um patamar novo do processor vira a base em no máximo
+ * uma janela, e uma amostra rápida fora da curva some no mesmo prazo.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long BASELINE_WINDOW_NANOS = Long
+            .parseLong(System.getenv().getOrDefault("LIMIT_BASELINE_WINDOW_MS", "4000")) * 1_000_000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long halfWindowNanos = Math.max(1, BASELINE_WINDOW_NANOS / 2);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double limit;
+    private int inFlight;
+    // Mínimos da metade atual e da anterior da janela de base
+    private long currentMinNanos = Long.MAX_VALUE;
+    private long previousMinNanos = Long.MAX_VALUE;
+    private long currentStartNanos = System.nanoTime();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /** Permissão só se houver folga agora - quem chama nunca espera (o dispatcher é uma thread só). */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) return false;
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Há permissão livre agora (leitura sem reservar - pode mudar logo em seguida). */
+    public boolean hasRoom() {
+        lock.lock();
+        try {
+            return inFlight < (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param baselineSample false quando a latência não diz nada sobre o processor
+     *                       (4xx de duplicata, tentativa que perdeu o hedge) - não
+     *                       entra na base, mas o resultado ainda ajusta o limite
+     */
+    public void release(long latencyNanos, boolean success, boolean baselineSample) {
+        lock.lock();
+        try {
+            inFlight--;
+
+            rotate(System.nanoTime());
+            if (success && baselineSample) {
+                currentMinNanos = Math.min(currentMinNanos, latencyNanos);
+            }
+            long baseline = Math.min(currentMinNanos, previousMinNanos);
+
+            if (!success || (baseline != Long.MAX_VALUE && latencyNanos > baseline * LATENCY_TOLERANCE)) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (inFlight + 1 >= (int) limit) {
+                // Só cresce quando o limite está de fato sendo usado
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rotate(long nowNanos) {
+        long elapsed = nowNanos - currentStartNanos;
+        if (elapsed < halfWindowNanos) return;
+        // Janela inteira sem amostra: a metade anterior também já venceu
+        previousMinNanos = elapsed < 2 * halfWindowNanos ? currentMinNanos : Long.MAX_VALUE;
+        currentMinNanos = Long.MAX_VALUE;
+        currentStartNanos = nowNanos - (elapsed % halfWindowNanos);
+    }
+
+    /** Devolve a permissão sem amostra de latência (envio nem chegou a acontecer). */
+    public void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+}
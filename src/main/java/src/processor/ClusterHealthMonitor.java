@@ -0,0 +1,91 @@
+package src.processor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import src.metrics.Counter;
+import src.metrics.Metrics;
+import src.model.ProcessorHealth;
+import src.service.HealthCheckService;
+import src.service.RedisAsyncManager;
+
+/**
+ * Health dos processors compartilhado entre app e app2. Só quem segura o lease
+ * no Redis consulta o service-health (respeitando o limite de 1 chamada/5s) e
+ * publica o resultado; todas as instâncias leem a mesma visão e aplicam nos
+ * ProcessorNodes (router + timeouts).
+ */
+public class ClusterHealthMonitor {
+    private static final String LEASE_KEY = "health:leader";
+    private static final long LEASE_TTL_MS = 3000;
+    private static final long REFRESH_INTERVAL_MS = 500;
+    // Limite do endpoint é 1 chamada a cada 5s - margem pra relógios/latência
+    private static final long POLL_INTERVAL_MS = Long
+            .parseLong(System.getenv().getOrDefault("HEALTH_POLL_INTERVAL_MS", "5100"));
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "health-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Último poll feito por ESTA instância - protege o rate limit mesmo sem Redis
+    private static final Counter pollErrors = Metrics.counter("payments_errors_total",
+            "Exceções engolidas por estágio", "stage=\"health_poll\"");
+
+    private static final long[] lastLocalPollAt = new long[ProcessorRouter.nodes().length];
+
+    public static void start() {
+        scheduler.scheduleWithFixedDelay(ClusterHealthMonitor::refresh, 0, REFRESH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static void refresh() {
+        ProcessorNode[] nodes = ProcessorRouter.nodes();
+        String[] names = new String[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            names[i] = nodes[i].name;
+        }
+
+        ProcessorHealth[] shared = null;
+        try {
+            shared = RedisAsyncManager.getHealth(names).join();
+            for (int i = 0; i < nodes.length; i++) {
+                if (shared[i] != null) nodes[i].applyHealth(shared[i]);
+            }
+        } catch (Exception ignored) {
+            // Sem visão compartilhada nesta rodada
+        }
+
+        boolean leader;
+        try {
+            leader = RedisAsyncManager.tryAcquireLease(LEASE_KEY, LEASE_TTL_MS).join();
+        } catch (Exception e) {
+            leader = true; // Redis fora: cada instância se vira sozinha, ainda dentro do rate limit local
+        }
+        if (!leader) return;
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < nodes.length; i++) {
+            long lastShared = shared != null && shared[i] != null ? shared[i].checkedAtMillis : 0;
+            long last = Math.max(lastShared, lastLocalPollAt[i]);
+            if (now - last < POLL_INTERVAL_MS) continue;
+
+            lastLocalPollAt[i] = now;
+            poll(nodes[i]);
+        }
+    }
+
+    private static void poll(ProcessorNode node) {
+        try {
+            ProcessorHealth health = HealthCheckService.checkProcessorHealth(node.url).join();
+            if (health == null) return;
+
+            node.applyHealth(health);
+            RedisAsyncManager.publishHealth(node.name, health);
+        } catch (Exception e) {
+            pollErrors.increment(); // Próxima rodada tenta de novo
+        }
+    }
+}
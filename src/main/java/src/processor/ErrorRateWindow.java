@@ -0,0 +1,50 @@
+package src.processor;
+
+/**
+ * Taxa de erro de um processor numa janela deslizante de duas metades: só
+ * derruba o health quando a fração de falhas passa do limite com amostras
+ * suficientes - uma falha isolada não tira o processor da rotação.
+ */
+final class ErrorRateWindow {
+    private static final long WINDOW_MS = Long
+            .parseLong(System.getenv().getOrDefault("HEALTH_ERROR_WINDOW_MS", "2000"));
+    private static final double MAX_ERROR_RATE = Double
+            .parseDouble(System.getenv().getOrDefault("HEALTH_MAX_ERROR_RATE", "0.5"));
+    private static final int MIN_SAMPLES = Integer
+            .parseInt(System.getenv().getOrDefault("HEALTH_ERROR_MIN_SAMPLES", "5"));
+
+    private final long halfMs = Math.max(1, WINDOW_MS / 2);
+    private long currentStartMs;
+    private int currentTotal;
+    private int currentFailures;
+    private int previousTotal;
+    private int previousFailures;
+
+    /** Registra o resultado; true quando a taxa de erro estourou o limite. */
+    synchronized boolean record(boolean success, long nowMs) {
+        rotate(nowMs);
+        currentTotal++;
+        if (!success) currentFailures++;
+
+        int total = currentTotal + previousTotal;
+        int failures = currentFailures + previousFailures;
+        return !success && total >= MIN_SAMPLES && failures >= MAX_ERROR_RATE * total;
+    }
+
+    synchronized void reset() {
+        currentTotal = currentFailures = previousTotal = previousFailures = 0;
+    }
+
+    private void rotate(long nowMs) {
+        long elapsed = nowMs - currentStartMs;
+        if (elapsed < halfMs) return;
+        if (elapsed < 2 * halfMs) {
+            previousTotal = currentTotal;
+            previousFailures = currentFailures;
+        } else {
+            previousTotal = previousFailures = 0; // Janela inteira sem tráfego
+        }
+        currentTotal = currentFailures = 0;
+        currentStartMs = nowMs - (elapsed % halfMs);
+    }
+}
@@ -0,0 +1,77 @@
+package src.processor;
+
+import java.util.function.Consumer;
+
+/**
+ * Timing wheel com hash por tick: add e expiração O(1), sem heap de prioridade.
+ * Delays maiores que uma volta ficam no slot e só expiram quando o tick do
+ * deadline chega. Não é thread-safe - só a thread do RetryScheduler mexe nele.
+ */
+final class HashedTimingWheel<T> {
+    private static final class Entry<T> {
+        final T item;
+        final long deadlineTick;
+        Entry<T> next;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final Entry<T>[] slots;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    HashedTimingWheel(long tickMs, int slotCount, long nowMs) {
+        if (Integer.bitCount(slotCount) != 1) throw new IllegalArgumentException("slotCount must be a power of two");
+        this.tickMs = tickMs;
+        this.mask = slotCount - 1;
+        this.slots = (Entry<T>[]) new Entry[slotCount];
+        this.currentTick = nowMs / tickMs;
+    }
+
+    void add(T item, long delayMs) {
+        long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+        long deadlineTick = currentTick + ticks;
+        int slot = (int) (deadlineTick & mask);
+        Entry<T> entry = new Entry<>(item, deadlineTick);
+        entry.next = slots[slot];
+        slots[slot] = entry;
+        size++;
+    }
+
+    /** Avança até nowMs entregando tudo que venceu. */
+    void advance(long nowMs, Consumer<T> expired) {
+        long targetTick = nowMs / tickMs;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick); // Roda vazia não precisa varrer os slots
+            return;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            int slot = (int) (currentTick & mask);
+            Entry<T> kept = null;
+            Entry<T> entry = slots[slot];
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                if (entry.deadlineTick <= currentTick) {
+                    size--;
+                    expired.accept(entry.item);
+                } else {
+                    entry.next = kept; // Voltas futuras continuam no slot
+                    kept = entry;
+                }
+                entry = next;
+            }
+            slots[slot] = kept;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,147 @@
+package src.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import src.model.PaymentRequest;
+
+/**
+ * Fila MPMC limitada, lock-free e pré-alocada (algoritmo de Vyukov: cada slot
+ * tem um número de sequência que diz se está livre ou publicado). Os campos
+ * do pagamento ficam em arrays primitivos paralelos - o ingest não aloca nada.
+ * Consumidor vazio gira um pouco, cede a CPU e por fim dorme numa Condition;
+ * o produtor só toca o lock quando alguém está dormindo.
+ */
+final class PaymentRing {
+    private static final int SPIN_TRIES = 64;
+    private static final int YIELD_TRIES = 16;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] idHigh;
+    private final long[] idLow;
+    private final long[] amountCents;
+    private final long[] requestedAtMillis;
+    private final int[] attempts;
+
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    private final ReentrantLock sleepLock = new ReentrantLock();
+    private final Condition notEmpty = sleepLock.newCondition();
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    PaymentRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.idHigh = new long[capacity];
+        this.idLow = new long[capacity];
+        this.amountCents = new long[capacity];
+        this.requestedAtMillis = new long[capacity];
+        this.attempts = new int[capacity];
+    }
+
+    /** false quando cheia. */
+    boolean offer(long high, long low, long cents, long millis, int attemptCount) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    idHigh[slot] = high;
+                    idLow[slot] = low;
+                    amountCents[slot] = cents;
+                    requestedAtMillis[slot] = millis;
+                    attempts[slot] = attemptCount;
+                    sequences.set(slot, position + 1); // Publica (volatile - ordena com a leitura de sleepers)
+                    wakeSleepers();
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    boolean offer(PaymentRequest payment) {
+        return offer(payment.idHigh, payment.idLow, payment.amountCents, payment.requestedAtMillis,
+                payment.attempts);
+    }
+
+    /** Próximo pagamento ou null se vazia. */
+    PaymentRequest poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long diff = sequences.get(slot) - (position + 1);
+            if (diff == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    PaymentRequest payment = new PaymentRequest(idHigh[slot], idLow[slot], amountCents[slot],
+                            requestedAtMillis[slot]);
+                    payment.attempts = attempts[slot];
+                    sequences.set(slot, position + mask + 1); // Libera o slot pra próxima volta
+                    return payment;
+                }
+                position = dequeuePosition.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /** Bloqueia até ter um pagamento. */
+    PaymentRequest take() throws InterruptedException {
+        for (int i = 0; i < SPIN_TRIES; i++) {
+            PaymentRequest payment = poll();
+            if (payment != null) return payment;
+            Thread.onSpinWait();
+        }
+        for (int i = 0; i < YIELD_TRIES; i++) {
+            PaymentRequest payment = poll();
+            if (payment != null) return payment;
+            Thread.yield();
+        }
+
+        sleepLock.lock();
+        sleepers.incrementAndGet();
+        try {
+            while (true) {
+                PaymentRequest payment = poll();
+                if (payment != null) return payment;
+                // Timeout só como rede de segurança - o acordar normal vem do signal
+                notEmpty.await(100, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            sleepers.decrementAndGet();
+            sleepLock.unlock();
+        }
+    }
+
+    int size() {
+        return (int) Math.max(0, enqueuePosition.get() - dequeuePosition.get());
+    }
+
+    private void wakeSleepers() {
+        if (sleepers.get() == 0) return;
+        sleepLock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            sleepLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package src.processor;
+
+import src.metrics.Counter;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+import src.model.ProcessorHealth;
+
+// Estado vivo de um payment processor (default ou fallback)
+public class ProcessorNode {
+    private static final double EWMA_ALPHA = 0.2;
+    private static final int LIMIT_INITIAL = Integer.parseInt(System.getenv().getOrDefault("LIMIT_INITIAL", "4"));
+    private static final int LIMIT_MIN = Integer.parseInt(System.getenv().getOrDefault("LIMIT_MIN", "1"));
+    private static final int LIMIT_MAX = Integer.parseInt(System.getenv().getOrDefault("LIMIT_MAX", "64"));
+    private static final long BASE_TIMEOUT_MS = 200;
+    private static final long MIN_TIMEOUT_MS = Long.parseLong(System.getenv().getOrDefault("MIN_TIMEOUT_MS", "50"));
+    private static final long MAX_TIMEOUT_MS = 2000;
+    // Folga sobre o minResponseTime anunciado antes de desistir do request (sem amostras ainda)
+    private static final long TIMEOUT_MARGIN_MS = 100;
+    // Com amostras: timeout = p99 * fator + folga - um request lento não segura o worker por 200ms fixos
+    private static final double TIMEOUT_P99_FACTOR = Double
+            .parseDouble(System.getenv().getOrDefault("TIMEOUT_P99_FACTOR", "1.5"));
+    private static final long TIMEOUT_SLACK_MS = 10;
+
+    public final String name;
+    public final String url;
+    public final double fee;
+    // Envios simultâneos que este processor aguenta agora
+    public final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(LIMIT_INITIAL, LIMIT_MIN,
+            LIMIT_MAX);
+    // Round trip de todo POST /payments (sucesso ou falha)
+    public final LatencyHistogram requestLatency;
+    public final Counter failures;
+    // Segundas tentativas disparadas no p95 / quantas responderam antes da original
+    public final Counter hedges;
+    public final Counter hedgeWins;
+    private final Counter healthFlips;
+    // Só sucessos - ver TimeoutStepUp para o que acontece com os timeouts
+    private final RollingPercentiles latencies = new RollingPercentiles();
+    private final TimeoutStepUp timeoutStepUp = new TimeoutStepUp();
+    private final ErrorRateWindow errorRate = new ErrorRateWindow();
+
+    private volatile boolean healthy = true;
+    private volatile long unhealthySinceMs = 0;
+    private volatile double ewmaLatencyMs = 0;
+    private volatile int minResponseTimeMs = 0;
+    private volatile long healthCheckedAtMillis = 0;
+
+    public ProcessorNode(String name, String url, double fee) {
+        this.name = name;
+        this.url = url;
+        this.fee = fee;
+
+        String labels = "processor=\"" + name + "\"";
+        this.requestLatency = Metrics.histogram("processor_request_seconds",
+                "Round trip do POST /payments no processor", labels);
+        this.failures = Metrics.counter("processor_failures_total", "Envios com 5xx, timeout ou erro de rede", labels);
+        this.hedges = Metrics.counter("processor_hedges_total", "Envios duplicados disparados no p95", labels);
+        this.hedgeWins = Metrics.counter("processor_hedge_wins_total",
+                "Envios duplicados que responderam antes do original", labels);
+        this.healthFlips = Metrics.counter("processor_health_flips_total", "Transições healthy <-> unhealthy", labels);
+        Metrics.gauge("processor_healthy", "1 se o processor está healthy", labels, () -> healthy ? 1 : 0);
+        Metrics.gauge("processor_concurrency_limit", "Limite atual do AdaptiveConcurrencyLimiter", labels,
+                limiter::limit);
+        Metrics.doubleGauge("processor_timeout_seconds", "Timeout atual do POST /payments", labels,
+                () -> requestTimeoutMs() / 1000.0);
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    // Latência esperada: a observada, mas nunca abaixo do mínimo anunciado pelo processor
+    public double latencyMs() {
+        return Math.max(ewmaLatencyMs, minResponseTimeMs);
+    }
+
+    public long requestTimeoutMs() {
+        long p99Nanos = latencies.p99Nanos();
+        long timeout;
+        if (p99Nanos == 0) {
+            timeout = Math.max(BASE_TIMEOUT_MS, minResponseTimeMs + TIMEOUT_MARGIN_MS);
+        } else {
+            // O processor anuncia um mínimo - abaixo dele todo request daria timeout
+            long expectedMs = Math.max(p99Nanos / 1_000_000, minResponseTimeMs);
+            timeout = Math.max(MIN_TIMEOUT_MS, (long) (expectedMs * TIMEOUT_P99_FACTOR) + TIMEOUT_SLACK_MS);
+        }
+        return Math.min(MAX_TIMEOUT_MS, (long) (timeout * timeoutStepUp.factor()));
+    }
+
+    // Quando disparar a segunda tentativa: o p95 observado (0 = sem amostras, não faz hedge)
+    public long hedgeDelayMs() {
+        long p95Nanos = latencies.p95Nanos();
+        if (p95Nanos == 0) return 0;
+        return Math.max(1, Math.max(p95Nanos / 1_000_000, minResponseTimeMs));
+    }
+
+    /**
+     * Aplica a visão compartilhada do service-health. Só resultados mais novos que
+     * o último aplicado contam; a EWMA é puxada para o minResponseTime para não
+     * ficar presa numa amostra velha quando o processor não recebe tráfego.
+     */
+    public void applyHealth(ProcessorHealth health) {
+        if (health.checkedAtMillis <= healthCheckedAtMillis) return;
+        healthCheckedAtMillis = health.checkedAtMillis;
+
+        minResponseTimeMs = health.minResponseTime;
+        double current = ewmaLatencyMs;
+        ewmaLatencyMs = current + 0.5 * (health.minResponseTime - current);
+
+        if (health.failing) {
+            markUnhealthy();
+        } else {
+            markHealthy();
+        }
+    }
+
+    // Há quanto tempo está fora (0 se healthy)
+    public long unhealthyForMs(long nowMs) {
+        return healthy ? 0 : nowMs - unhealthySinceMs;
+    }
+
+    /** @param latencySample false para 4xx de duplicata e perdedores do hedge - entregue, mas sem latência útil */
+    public void recordSuccess(long latencyNanos, boolean latencySample) {
+        if (latencySample) {
+            double sample = latencyNanos / 1_000_000.0;
+            double current = ewmaLatencyMs;
+            // Race benigna - EWMA é aproximado por natureza
+            ewmaLatencyMs = current == 0 ? sample : current + EWMA_ALPHA * (sample - current);
+            latencies.record(latencyNanos);
+        }
+        long now = System.currentTimeMillis();
+        timeoutStepUp.record(false, now);
+        errorRate.record(true, now);
+    }
+
+    /**
+     * Sai da rotação só quando a taxa de erro da janela estoura - uma falha isolada
+     * não derruba o processor. Falha não entra nos percentis; timeout alimenta o
+     * TimeoutStepUp, que alarga o timeout enquanto a taxa de timeouts estiver alta.
+     */
+    public void recordFailure(boolean timedOut) {
+        failures.increment();
+        long now = System.currentTimeMillis();
+        timeoutStepUp.record(timedOut, now);
+        if (errorRate.record(false, now)) {
+            markUnhealthy();
+        }
+    }
+
+    public void markHealthy() {
+        if (!healthy) {
+            // Falhas e latências de antes da queda não contam contra a volta
+            errorRate.reset();
+            latencies.reset();
+            timeoutStepUp.reset();
+            healthy = true;
+            healthFlips.increment();
+        }
+    }
+
+    public void markUnhealthy() {
+        if (healthy) {
+            unhealthySinceMs = System.currentTimeMillis();
+            healthy = false;
+            healthFlips.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessorNode [name=" + name + ", healthy=" + healthy + ", latencyMs=" + ewmaLatencyMs + ", limit="
+                + limiter.limit() + "]";
+    }
+}
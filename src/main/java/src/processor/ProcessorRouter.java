@@ -0,0 +1,51 @@
+package src.processor;
+
+// Escolhe o processor de cada pagamento a partir de health, latência observada e taxa
+public class ProcessorRouter {
+    public static final ProcessorNode DEFAULT = new ProcessorNode("default",
+            System.getenv().getOrDefault("DEFAULT_PROCESSOR_URL", "http://localhost:8001"),
+            Double.parseDouble(System.getenv().getOrDefault("DEFAULT_PROCESSOR_FEE", "0.05")));
+    public static final ProcessorNode FALLBACK = new ProcessorNode("fallback",
+            System.getenv().getOrDefault("FALLBACK_PROCESSOR_URL", "http://localhost:8002"),
+            Double.parseDouble(System.getenv().getOrDefault("FALLBACK_PROCESSOR_FEE", "0.15")));
+
+    // Quantos ms de latência valem 1 ponto percentual de taxa
+    private static final double MS_PER_FEE_POINT = Double
+            .parseDouble(System.getenv().getOrDefault("ROUTER_MS_PER_FEE_POINT", "20"));
+
+    private static final ProcessorNode[] NODES = { DEFAULT, FALLBACK };
+
+    public static ProcessorNode[] nodes() {
+        return NODES;
+    }
+
+    public static ProcessorNode byName(String name) {
+        return FALLBACK.name.equals(name) ? FALLBACK : DEFAULT;
+    }
+
+    /**
+     * Retorna o processor alvo ou null quando vale mais a pena esperar o default
+     * voltar (o chamador deve recolocar o pagamento na fila).
+     */
+    public static ProcessorNode choose() {
+        boolean defaultUp = DEFAULT.isHealthy();
+        boolean fallbackUp = FALLBACK.isHealthy();
+
+        if (defaultUp && !fallbackUp) return DEFAULT;
+        if (!defaultUp && !fallbackUp) return null;
+
+        // Taxa extra do fallback convertida em "ms de espera" que aceitamos pagar
+        double feePenaltyMs = (FALLBACK.fee - DEFAULT.fee) * 100 * MS_PER_FEE_POINT;
+
+        if (!defaultUp) {
+            // Outage curto tende a ser curto: espera até o custo de esperar superar a taxa
+            long downMs = DEFAULT.unhealthyForMs(System.currentTimeMillis());
+            return downMs > feePenaltyMs ? FALLBACK : null;
+        }
+
+        // Ambos healthy: default só perde se estiver lento a ponto de pagar a taxa extra
+        double defaultScore = DEFAULT.latencyMs();
+        double fallbackScore = FALLBACK.latencyMs() + feePenaltyMs;
+        return fallbackScore < defaultScore ? FALLBACK : DEFAULT;
+    }
+}
@@ -0,0 +1,181 @@
+package src.processor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import src.metrics.Counter;
+import src.metrics.Metrics;
+import src.model.PaymentRequest;
+
+/**
+ * Segura pagamentos que não podem ir agora (fila cheia, nenhum processor,
+ * envio falhou, Redis engasgou) em vez de dropar. Backoff exponencial com
+ * jitter num HashedTimingWheel; o tier em memória é limitado e o excesso vai
+ * pro RetrySpillFile (fora do heap). Os vencidos voltam pra fila em lotes,
+ * só quando o router tem um processor pra atender.
+ */
+final class RetryScheduler {
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SLOTS = 512;
+
+    private static final long BASE_DELAY_MS = Long
+            .parseLong(System.getenv().getOrDefault("RETRY_BASE_DELAY_MS", "50"));
+    private static final long MAX_DELAY_MS = Long
+            .parseLong(System.getenv().getOrDefault("RETRY_MAX_DELAY_MS", "2000"));
+    private static final int MEMORY_CAPACITY = Integer
+            .parseInt(System.getenv().getOrDefault("RETRY_MEMORY_CAPACITY", "20000"));
+    private static final int RELEASE_BATCH = Integer
+            .parseInt(System.getenv().getOrDefault("RETRY_RELEASE_BATCH", "256"));
+    private static final String SPILL_PATH = System.getenv()
+            .getOrDefault("RETRY_SPILL_PATH", "/tmp/payments-retry.spill");
+    private static final int SPILL_CAPACITY = Integer
+            .parseInt(System.getenv().getOrDefault("RETRY_SPILL_CAPACITY", "100000"));
+
+    private static final Counter dropped = Metrics.counter("payments_dropped_total",
+            "Pagamentos perdidos com memória e spill do RetryScheduler cheios", "");
+    private static final Counter spilled = Metrics.counter("payments_retry_spilled_total",
+            "Pagamentos derramados para o arquivo de spill", "");
+    private static final Counter retries = Metrics.counter("payments_retries_total",
+            "Reenvios agendados com backoff", "");
+    private static final Counter errors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"retry\"");
+
+    private record Pending(PaymentRequest payment, long delayMs) {
+    }
+
+    private final Predicate<PaymentRequest> sink;
+    private final BooleanSupplier canRelease;
+
+    // Produtores de qualquer thread entram aqui; só a thread do scheduler mexe na roda
+    private final ConcurrentLinkedQueue<Pending> incoming = new ConcurrentLinkedQueue<>();
+    private final HashedTimingWheel<PaymentRequest> wheel = new HashedTimingWheel<>(TICK_MS, WHEEL_SLOTS,
+            System.currentTimeMillis());
+    private final ArrayDeque<PaymentRequest> due = new ArrayDeque<>();
+    private final AtomicInteger inMemory = new AtomicInteger();
+    private final RetrySpillFile spill;
+    private final Thread thread;
+
+    /**
+     * @param sink       recebe os pagamentos liberados; false = sem espaço, tenta no próximo tick
+     * @param canRelease true quando existe processor pra atender
+     */
+    RetryScheduler(Predicate<PaymentRequest> sink, BooleanSupplier canRelease) {
+        this.sink = sink;
+        this.canRelease = canRelease;
+        this.spill = openSpill();
+        this.thread = new Thread(this::run, "retry-scheduler");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Envio falhou: conta a tentativa e agenda com backoff. */
+    void retry(PaymentRequest payment) {
+        payment.attempts++;
+        retries.increment();
+        hold(payment, backoffMs(payment.attempts));
+    }
+
+    /** Sem espaço ou sem processor agora: libera assim que der, sem contar tentativa. */
+    void defer(PaymentRequest payment) {
+        hold(payment, 0);
+    }
+
+    int pending() {
+        return inMemory.get() + (spill == null ? 0 : spill.size());
+    }
+
+    private void hold(PaymentRequest payment, long delayMs) {
+        if (inMemory.incrementAndGet() > MEMORY_CAPACITY) {
+            inMemory.decrementAndGet();
+            // O vencimento vai junto: quem volta do disco ainda respeita o backoff
+            if (spill != null && spill.append(payment, System.currentTimeMillis() + delayMs)) {
+                spilled.increment();
+            } else {
+                dropped.increment(); // Memória e disco cheios - último recurso
+            }
+        } else {
+            incoming.add(new Pending(payment, delayMs));
+        }
+        LockSupport.unpark(thread);
+    }
+
+    static long backoffMs(int attempts) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempts - 1, 20));
+        // Jitter "equal": metade fixa + metade aleatória - espalha os retries sem zerar o backoff
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Pending pending;
+                while ((pending = incoming.poll()) != null) {
+                    if (pending.delayMs() == 0) {
+                        due.add(pending.payment());
+                    } else {
+                        wheel.add(pending.payment(), pending.delayMs());
+                    }
+                }
+
+                wheel.advance(System.currentTimeMillis(), due::add);
+                releaseBatch();
+                refillFromSpill();
+
+                if (inMemory.get() == 0 && (spill == null || spill.size() == 0)) {
+                    LockSupport.park(this); // Nada retido - dorme até o próximo hold()
+                } else {
+                    LockSupport.parkNanos(this, TICK_MS * 1_000_000);
+                }
+            } catch (Exception e) {
+                errors.increment(); // Scheduler nunca pode morrer
+            }
+        }
+    }
+
+    private void releaseBatch() {
+        if (due.isEmpty() || !canRelease.getAsBoolean()) return;
+
+        for (int i = 0; i < RELEASE_BATCH; i++) {
+            PaymentRequest payment = due.peek();
+            if (payment == null || !sink.test(payment)) return;
+            due.poll();
+            inMemory.decrementAndGet();
+        }
+    }
+
+    // Traz de volta do disco quando a memória tem folga (metade da capacidade); backoff ainda não vencido
+    // volta para a roda pelo que falta
+    private void refillFromSpill() {
+        if (spill == null) return;
+        long now = System.currentTimeMillis();
+        while (inMemory.get() < MEMORY_CAPACITY / 2) {
+            RetrySpillFile.Entry entry = spill.poll();
+            if (entry == null) return;
+            inMemory.incrementAndGet();
+            if (entry.dueAtMillis() > now) {
+                wheel.add(entry.payment(), entry.dueAtMillis() - now);
+            } else {
+                due.add(entry.payment());
+            }
+        }
+    }
+
+    private static RetrySpillFile openSpill() {
+        try {
+            return new RetrySpillFile(Path.of(SPILL_PATH), SPILL_CAPACITY);
+        } catch (IOException | RuntimeException e) {
+            return null; // Sem disco: só o tier em memória
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package src.processor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import src.model.PaymentRequest;
+
+/**
+ * Tier de overflow do RetryScheduler: arquivo append-only mapeado em memória
+ * (fora do heap). Registros de tamanho fixo; leitura sequencial pelo mesmo
+ * arquivo e, quando a leitura alcança a escrita, ambos voltam pro início.
+ */
+final class RetrySpillFile {
+    // idHigh(8) + idLow(8) + amountCents(8) + requestedAtMillis(8) + dueAtMillis(8) + attempts(4)
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 8 + 8 + 4;
+
+    /** Pagamento derramado e quando o backoff dele vence. */
+    record Entry(PaymentRequest payment, long dueAtMillis) {
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int capacityRecords;
+    private int writeIndex;
+    private int readIndex;
+
+    RetrySpillFile(Path path, int capacityRecords) throws IOException {
+        this.capacityRecords = capacityRecords;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // O mapeamento continua válido depois de fechar o canal
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacityRecords * RECORD_SIZE);
+        }
+    }
+
+    /** false se o arquivo está cheio. */
+    synchronized boolean append(PaymentRequest payment, long dueAtMillis) {
+        if (writeIndex == capacityRecords) return false;
+
+        int pos = writeIndex * RECORD_SIZE;
+        buffer.putLong(pos, payment.idHigh);
+        buffer.putLong(pos + 8, payment.idLow);
+        buffer.putLong(pos + 16, payment.amountCents);
+        buffer.putLong(pos + 24, payment.requestedAtMillis);
+        buffer.putLong(pos + 32, dueAtMillis);
+        buffer.putInt(pos + 40, payment.attempts);
+        writeIndex++;
+        return true;
+    }
+
+    /** Próximo registro derramado ou null se vazio. */
+    synchronized Entry poll() {
+        if (readIndex == writeIndex) return null;
+
+        int pos = readIndex * RECORD_SIZE;
+        PaymentRequest payment = new PaymentRequest(buffer.getLong(pos), buffer.getLong(pos + 8),
+                buffer.getLong(pos + 16), buffer.getLong(pos + 24));
+        payment.attempts = buffer.getInt(pos + 40);
+        Entry entry = new Entry(payment, buffer.getLong(pos + 32));
+
+        if (++readIndex == writeIndex) {
+            readIndex = 0;
+            writeIndex = 0;
+        }
+        return entry;
+    }
+
+    synchronized int size() {
+        return writeIndex - readIndex;
+    }
+}
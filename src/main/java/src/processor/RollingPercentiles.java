@@ -0,0 +1,63 @@
+package src.processor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * p95/p99 das últimas WINDOW latências de sucesso de um processor. O registro é uma
+ * escrita num ring; a cada RECOMPUTE_EVERY amostras uma thread (a que chegar
+ * primeiro) ordena uma cópia e publica os percentis em campos voláteis.
+ * Leitura é só um volatile read.
+ */
+final class RollingPercentiles {
+    private static final int WINDOW = 256;
+    private static final int MASK = WINDOW - 1;
+    private static final int RECOMPUTE_EVERY = 32;
+    // Abaixo disso os percentis não dizem nada - quem lê cai no padrão
+    static final int MIN_SAMPLES = 32;
+
+    private final long[] samples = new long[WINDOW];
+    private final long[] scratch = new long[WINDOW];
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicBoolean computing = new AtomicBoolean();
+
+    private volatile long p95Nanos;
+    private volatile long p99Nanos;
+
+    void record(long nanos) {
+        long n = recorded.getAndIncrement();
+        samples[(int) (n & MASK)] = nanos; // Race benigna: no pior caso uma amostra é sobrescrita
+        if ((n + 1) % RECOMPUTE_EVERY == 0 && n + 1 >= MIN_SAMPLES) {
+            recompute(n + 1);
+        }
+    }
+
+    /** 0 enquanto não houver MIN_SAMPLES amostras. */
+    long p95Nanos() {
+        return p95Nanos;
+    }
+
+    long p99Nanos() {
+        return p99Nanos;
+    }
+
+    void reset() {
+        recorded.set(0);
+        p95Nanos = 0;
+        p99Nanos = 0;
+    }
+
+    private void recompute(long total) {
+        if (!computing.compareAndSet(false, true)) return; // Outra thread já está calculando
+        try {
+            int size = (int) Math.min(total, WINDOW);
+            System.arraycopy(samples, 0, scratch, 0, size);
+            Arrays.sort(scratch, 0, size);
+            p95Nanos = scratch[(int) (size * 0.95) - 1];
+            p99Nanos = scratch[(int) (size * 0.99) - 1];
+        } finally {
+            computing.set(false);
+        }
+    }
+}
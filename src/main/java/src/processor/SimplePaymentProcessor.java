@@ -1,108 +1,230 @@
 package src.processor;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import src.metrics.Counter;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
 import src.model.PaymentRequest;
-import src.service.HealthCheckService;
+import src.service.IdempotencyGuard;
 import src.service.PaymentService;
-import src.service.RedisAsyncManager;
+import src.service.PaymentSummaryEngine;
+import src.service.RedisOverflowStream;
 
 public class SimplePaymentProcessor {
-    private static final String DEFAULT_PROCESSOR = System.getenv().getOrDefault("DEFAULT_PROCESSOR_URL",
-            "http://localhost:8001");
+    // Ring pré-alocado em arrays primitivos - o ingest não gera lixo
+    private static final PaymentRing paymentQueue = new PaymentRing(8192);
+
+    // Nada é dropado: o que não cabe ou não pode ir agora fica retido com backoff
+    private static final RetryScheduler retryScheduler = new RetryScheduler(paymentQueue::offer,
+            SimplePaymentProcessor::canDispatch);
+
+    // Acima dessa profundidade a instância está atrasada: o excesso vai pro stream compartilhado se a outra
+    // instância anunciou folga; abaixo de 1/4 dela esta instância volta a puxar de lá
+    private static final int OVERFLOW_QUEUE_DEPTH = Integer
+            .parseInt(System.getenv().getOrDefault("OVERFLOW_QUEUE_DEPTH", "1024"));
+    // Só depois de startPaymentWorker - pagamentos do warm-up nunca podem sair para o stream
+    private static volatile boolean overflowActive = false;
+
+    // Desde o ingest até sair para o claim (inclui retries; resolução de ms)
+    private static final LatencyHistogram queueWait = Metrics.histogram("payments_queue_wait_seconds",
+            "Tempo entre o ingest e a saída da fila", "");
+    private static final Counter localDuplicates = Metrics.counter("payments_duplicates_total",
+            "Duplicatas descartadas", "layer=\"local\"");
+    private static final Counter claimDuplicates = Metrics.counter("payments_duplicates_total",
+            "Duplicatas descartadas", "layer=\"claim\"");
+    private static final Counter dispatchErrors = Metrics.counter("payments_errors_total",
+            "Exceções engolidas por estágio", "stage=\"dispatch\"");
+
+    static {
+        Metrics.gauge("payments_queue_depth", "Pagamentos no ring aguardando o dispatcher", "", paymentQueue::size);
+        Metrics.gauge("payments_retry_pending", "Pagamentos retidos no RetryScheduler (memória + spill)", "",
+                retryScheduler::pending);
+    }
+
+    // Segunda tentativa no mesmo processor quando a primeira passa do p95 - o correlationId torna a duplicata
+    // inofensiva (o processor responde 4xx para a repetida, que conta como sucesso)
+    private static final boolean HEDGING_ENABLED = Boolean
+            .parseBoolean(System.getenv().getOrDefault("HEDGING_ENABLED", "false"));
+
+    public static void enqueuePayment(long idHigh, long idLow, long amountCents) {
+        // Duplicata local morre aqui, sem tocar o Redis
+        if (!IdempotencyGuard.firstSeen(idHigh, idLow)) {
+            localDuplicates.increment();
+            return;
+        }
 
-    // Queue menor para evitar memory bloat
-    private static final BlockingQueue<PaymentRequest> paymentQueue = new LinkedBlockingQueue<>(5000);
+        long now = System.currentTimeMillis();
+        if (overflowActive && paymentQueue.size() >= OVERFLOW_QUEUE_DEPTH && RedisOverflowStream.peerHasRoom()) {
+            overflow(new PaymentRequest(idHigh, idLow, amountCents, now));
+            return;
+        }
+
+        // Fire-and-forget - se o ring encheu, segura no scheduler até abrir espaço
+        if (!paymentQueue.offer(idHigh, idLow, amountCents, now, 0)) {
+            retryScheduler.defer(new PaymentRequest(idHigh, idLow, amountCents, now));
+        }
+    }
 
-    private static volatile PaymentRequest successfulPaymentForTest = null;
-    private static volatile boolean defaultProcessorHealthy = true;
+    // Stream fora do ar ou lento: fica com a gente mesmo, via scheduler
+    private static void overflow(PaymentRequest payment) {
+        RedisOverflowStream.publish(payment).exceptionally(throwable -> {
+            retryScheduler.defer(payment);
+            return null;
+        });
+    }
 
-    // Pool MUITO reduzido - menos overhead
-    private static final int AVAILABLE_CORES = Runtime.getRuntime().availableProcessors();
-    private static final int WORKER_POOL_SIZE = Math.max(2, AVAILABLE_CORES / 2); // REDUZIDO drasticamente
-    private static final int HEALTH_CHECK_THREADS = 1;
+    // Há processor e ele tem permissão livre - senão o que sai do scheduler só voltaria para ele
+    private static boolean canDispatch() {
+        ProcessorNode target = ProcessorRouter.choose();
+        return target != null && target.limiter.hasRoom();
+    }
 
-    private static final ExecutorService workerExecutor = Executors.newFixedThreadPool(WORKER_POOL_SIZE);
-    private static final ScheduledExecutorService healthCheckExecutor = Executors
-            .newScheduledThreadPool(HEALTH_CHECK_THREADS);
+    private static void offerOrDefer(PaymentRequest payment) {
+        if (!paymentQueue.offer(payment)) {
+            retryScheduler.defer(payment);
+        }
+    }
 
-    public static void enqueuePayment(PaymentRequest req) {
-        // Fire-and-forget - se queue cheia, dropa
-        paymentQueue.offer(req);
+    /** Esvazia o ring sem despachar - só para o warm-up, antes de startPaymentWorker. */
+    public static int drainQueued(Consumer<PaymentRequest> sink) {
+        int drained = 0;
+        PaymentRequest payment;
+        while ((payment = paymentQueue.poll()) != null) {
+            sink.accept(payment);
+            drained++;
+        }
+        return drained;
     }
 
     public static void startPaymentWorker() {
-        // Menos workers = menos overhead
-        for (int i = 0; i < WORKER_POOL_SIZE; i++) {
-            workerExecutor.submit(SimplePaymentProcessor::processPaymentsSimple);
+        retryScheduler.start();
+        if (RedisOverflowStream.ENABLED) {
+            RedisOverflowStream.startConsumer(
+                    () -> paymentQueue.size() < OVERFLOW_QUEUE_DEPTH / 4 && ProcessorRouter.choose() != null,
+                    SimplePaymentProcessor::offerOrDefer);
+            overflowActive = true;
         }
+
+        Thread dispatcher = new Thread(SimplePaymentProcessor::dispatchPayments, "payment-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
     }
 
-    // Versão SIMPLIFICADA - menos async overhead
-    private static void processPaymentsSimple() {
+    // Tira da fila, escolhe o processor e faz o claim async; o envio sai no callback do claim
+    private static void dispatchPayments() {
         while (true) {
             try {
-                // Timeout maior para reduzir CPU usage
-                PaymentRequest payment = paymentQueue.poll(50, TimeUnit.MILLISECONDS);
-                if (payment == null) continue;
-
-                if (!defaultProcessorHealthy) {
-                    continue; // Skip se unhealthy
+                PaymentRequest payment = paymentQueue.take();
+                queueWait.recordNanos((System.currentTimeMillis() - payment.requestedAtMillis) * 1_000_000);
+
+                ProcessorNode target = ProcessorRouter.choose();
+                if (target == null) {
+                    // Esperar o default é melhor que pagar o fallback - o scheduler solta quando houver alvo
+                    retryScheduler.defer(payment);
+                    continue;
                 }
 
-                // Processamento MAIS DIRETO
-                processPaymentDirect(payment);
-
-            } catch (Exception ignored) {
-                // Ignora erros
+                // Nunca espera aqui: limite cheio seguraria o ring inteiro atrás de um processor
+                if (!target.limiter.tryAcquire()) {
+                    retryScheduler.defer(payment);
+                    continue;
+                }
+                String correlationId = payment.correlationId();
+                IdempotencyGuard.claim(correlationId).whenComplete((claimed, throwable) -> {
+                    if (throwable != null) {
+                        // Redis engasgou - não é culpa do processor, tenta de novo depois
+                        target.limiter.cancel();
+                        retryScheduler.retry(payment);
+                    } else if (!claimed) {
+                        target.limiter.cancel(); // Já registrado ou com a outra instância
+                        claimDuplicates.increment();
+                    } else {
+                        // O envio é async - roda direto no callback, sem thread própria
+                        processPaymentDirect(payment, correlationId, target);
+                    }
+                });
+
+            } catch (Exception e) {
+                dispatchErrors.increment();
             }
         }
     }
 
-    private static void processPaymentDirect(PaymentRequest payment) {
-        try {
-            // Check duplicata SÍNCRONO e rápido (timeout baixo)
-            Boolean exists = RedisAsyncManager.existsAsync(payment.correlationId)
-                    .orTimeout(15, TimeUnit.MILLISECONDS) // Timeout ULTRA baixo
-                    .join(); // Transforma em síncrono
-
-            if (Boolean.TRUE.equals(exists)) {
-                return; // Duplicata - dropa
+    private static void processPaymentDirect(PaymentRequest payment, String correlationId, ProcessorNode target) {
+        // Envia para processor - conclusão via callback, nenhuma thread parada esperando
+        send(payment, target).thenAccept(success -> {
+            if (success) {
+                PaymentSummaryEngine.recordProcessed(payment, correlationId, target.name);
+            } else {
+                retryScheduler.retry(payment); // Outro processor pode aceitar - o claim continua nosso
             }
+        });
+    }
 
-            // Envia para processor
-            Boolean success = PaymentService.sendPaymentToProcessor(payment, DEFAULT_PROCESSOR);
-            
-            if (Boolean.TRUE.equals(success)) {
-                // Redis operations FIRE-AND-FORGET (sem aguardar)
-                RedisAsyncManager.incrementTotalRequests();
-                RedisAsyncManager.createRedisRequest(payment.requestedAt, payment.correlationId, payment.amount);
-
-                if (successfulPaymentForTest == null) {
-                    successfulPaymentForTest = payment;
-                }
+    /**
+     * Uma tentativa = uma permissão do limiter e uma amostra de latência, medida
+     * do próprio início. 4xx (duplicata) e a tentativa que chega depois do
+     * pagamento já decidido (perdeu o hedge) não viram amostra de latência.
+     */
+    private static CompletableFuture<Boolean> attempt(PaymentRequest payment, ProcessorNode target, long timeoutMs,
+            CompletableFuture<Boolean> decided) {
+        long start = System.nanoTime();
+        return PaymentService.sendPaymentToProcessor(payment, target.url, timeoutMs).thenApply(outcome -> {
+            long latency = System.nanoTime() - start;
+            boolean delivered = outcome.delivered();
+            boolean sample = outcome == PaymentService.Outcome.ACCEPTED && !decided.isDone();
+            target.limiter.release(latency, delivered, sample);
+            target.requestLatency.recordNanos(latency);
+            if (delivered) {
+                target.recordSuccess(latency, sample);
             } else {
-                defaultProcessorHealthy = false;
+                target.recordFailure(latency >= TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            }
+            return delivered;
+        });
+    }
+
+    // Completa com true na primeira resposta boa; false só quando todas as tentativas falharam
+    private static CompletableFuture<Boolean> send(PaymentRequest payment, ProcessorNode target) {
+        long timeoutMs = target.requestTimeoutMs();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger inFlight = new AtomicInteger(1);
+        CompletableFuture<Boolean> first = attempt(payment, target, timeoutMs, result);
+        first.thenAccept(success -> complete(result, inFlight, success));
+        long hedgeDelayMs = HEDGING_ENABLED ? target.hedgeDelayMs() : 0;
+        if (hedgeDelayMs <= 0 || hedgeDelayMs >= timeoutMs) return result;
+
+        // A tarefa do hedge só dispara um envio async - o executor padrão basta
+        CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            // Conta o hedge antes de olhar o resultado: se a original falhar entre as duas coisas, o false
+            // espera por ele em vez de descartar um sucesso do hedge (e mandar o pagamento para outro processor)
+            inFlight.incrementAndGet();
+            if (result.isDone() || !target.limiter.tryAcquire()) {
+                complete(result, inFlight, false); // Não vai - só desfaz a contagem
+                return;
             }
+            target.hedges.increment();
+            attempt(payment, target, timeoutMs, result).thenAccept(success -> {
+                if (success && !first.isDone()) target.hedgeWins.increment();
+                complete(result, inFlight, success);
+            });
+        });
+        return result;
+    }
 
-        } catch (Exception e) {
-            // Se Redis timeout ou falha, marca processor como unhealthy
-            defaultProcessorHealthy = false;
+    private static void complete(CompletableFuture<Boolean> result, AtomicInteger inFlight, boolean success) {
+        if (success) {
+            result.complete(true);
+        } else if (inFlight.decrementAndGet() == 0) {
+            result.complete(false);
         }
     }
 
     public static void startHealthCheckMonitoring() {
-        // Health check MUITO menos frequente
-        healthCheckExecutor.scheduleWithFixedDelay(() -> {
-            if (successfulPaymentForTest != null && !defaultProcessorHealthy) {
-                defaultProcessorHealthy = HealthCheckService.checkDefaultProcessorHealth(DEFAULT_PROCESSOR,
-                        successfulPaymentForTest);
-            }
-        }, 500, 1000, TimeUnit.MILLISECONDS); // Intervalos maiores
+        ClusterHealthMonitor.start();
     }
-}
\ No newline at end of file
+}
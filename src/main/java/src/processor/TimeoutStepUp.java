@@ -0,0 +1,52 @@
+package src.processor;
+
+/**
+ * Fator sobre o timeout derivado do p99 de sucessos. Tentativas que estouram
+ * o timeout não entram nos percentis (senão o p99 vira o próprio timeout e
+ * ele sobe 1.5x a cada recompute até o teto); em vez disso, a cada PERIOD_MS
+ * com taxa de timeout acima de MAX_TIMEOUT_RATE o fator sobe STEP, limitado a
+ * MAX_FACTOR, e cada período abaixo dela (ou sem tráfego) desce STEP até 1.
+ */
+final class TimeoutStepUp {
+    private static final long PERIOD_MS = 1000;
+    private static final double STEP = 1.5;
+    private static final double MAX_FACTOR = Double
+            .parseDouble(System.getenv().getOrDefault("TIMEOUT_STEP_UP_MAX", "4"));
+    private static final double MAX_TIMEOUT_RATE = Double
+            .parseDouble(System.getenv().getOrDefault("TIMEOUT_STEP_UP_RATE", "0.05"));
+    private static final int MIN_SAMPLES = 20;
+
+    private long periodStartMs;
+    private int attempts;
+    private int timeouts;
+    private volatile double factor = 1.0;
+
+    synchronized void record(boolean timedOut, long nowMs) {
+        long periods = (nowMs - periodStartMs) / PERIOD_MS;
+        if (periods > 0) {
+            double next = factor;
+            if (attempts >= MIN_SAMPLES && timeouts >= MAX_TIMEOUT_RATE * attempts) {
+                next = Math.min(MAX_FACTOR, next * STEP);
+                periods--;
+            }
+            // Períodos vazios depois do avaliado contam como calmos
+            next = Math.max(1.0, next / Math.pow(STEP, Math.min(periods, 64)));
+            factor = next;
+            periodStartMs = nowMs;
+            attempts = 0;
+            timeouts = 0;
+        }
+        attempts++;
+        if (timedOut) timeouts++;
+    }
+
+    double factor() {
+        return factor;
+    }
+
+    synchronized void reset() {
+        attempts = 0;
+        timeouts = 0;
+        factor = 1.0;
+    }
+}
@@ -5,31 +5,58 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
-import src.model.PaymentRequest;
+import src.model.ProcessorHealth;
 
+// GET /payments/service-health dos processors (limitado a 1 chamada a cada 5s por processor)
 public class HealthCheckService {
     private static final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
             .connectTimeout(Duration.ofSeconds(1))
             .build();
 
-    public static boolean checkDefaultProcessorHealth(String processorUrl, PaymentRequest payment) {
-        try {
-            String jsonPayload = String.format(
-                    "{\"correlationId\":\"%s\",\"amount\":%.2f,\"requestedAt\":\"%s\"}",
-                    payment.correlationId, payment.amount, payment.requestedAt
-            );
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(processorUrl + "/payments"))
-                    .timeout(Duration.ofMillis(200))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            int statusCode = response.statusCode();
-            return (statusCode >= 200 && statusCode < 420);
-        } catch (Exception e) {
-            return false;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(1000);
+
+    /** Completa com null quando o endpoint não respondeu algo utilizável (ex: 429). */
+    public static CompletableFuture<ProcessorHealth> checkProcessorHealth(String processorUrl) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(processorUrl + "/payments/service-health"))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, throwable) -> {
+                    long now = System.currentTimeMillis();
+                    if (throwable != null) {
+                        // Nem respondeu - para o router isso é failing
+                        return new ProcessorHealth(true, 0, now);
+                    }
+                    if (response.statusCode() != 200) return null;
+                    return parse(response.body(), now);
+                });
+    }
+
+    // {"failing":false,"minResponseTime":0}
+    static ProcessorHealth parse(String body, long checkedAtMillis) {
+        int failingIdx = body.indexOf("\"failing\"");
+        int minIdx = body.indexOf("\"minResponseTime\"");
+        if (failingIdx == -1 || minIdx == -1) return null;
+
+        int colon = body.indexOf(':', failingIdx);
+        boolean failing = body.startsWith("true", skipSpaces(body, colon + 1));
+
+        int pos = skipSpaces(body, body.indexOf(':', minIdx) + 1);
+        int minResponseTime = 0;
+        while (pos < body.length() && Character.isDigit(body.charAt(pos))) {
+            minResponseTime = minResponseTime * 10 + (body.charAt(pos++) - '0');
         }
+        return new ProcessorHealth(failing, minResponseTime, checkedAtMillis);
+    }
+
+    private static int skipSpaces(String s, int pos) {
+        while (pos < s.length() && s.charAt(pos) == ' ') pos++;
+        return pos;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package src.service;
+
+import java.util.concurrent.CompletableFuture;
+
+// Dedup em duas camadas: filtro local em memória no ingest + claim atômico no Redis antes do envio
+public class IdempotencyGuard {
+    static final int FILTER_CAPACITY = Integer.highestOneBit(
+            Integer.parseInt(System.getenv().getOrDefault("DEDUP_FILTER_CAPACITY", "65536")));
+
+    private static final RecentlySeenFilter recentlySeen = new RecentlySeenFilter(FILTER_CAPACITY);
+
+    /** false quando o correlationId já passou por esta instância - descarta sem tocar o Redis. */
+    public static boolean firstSeen(long idHigh, long idLow) {
+        return recentlySeen.markSeen(fingerprint(idHigh, idLow));
+    }
+
+    /** Esquece tudo que o filtro local já viu (fim do warm-up). */
+    public static void reset() {
+        recentlySeen.clear();
+    }
+
+    /** Claim entre instâncias - ver RedisAsyncManager.claimPayment. */
+    public static CompletableFuture<Boolean> claim(String correlationId) {
+        return RedisAsyncManager.claimPayment(correlationId);
+    }
+
+    // Mix dos dois longs do UUID (finalizador do murmur3) - barato e bem distribuído
+    static long fingerprint(long idHigh, long idLow) {
+        long h = idHigh * 0x9e3779b97f4a7c15L ^ idLow;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
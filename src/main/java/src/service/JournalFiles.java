@@ -0,0 +1,385 @@
+package src.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Arquivos do PaymentJournal num diretório: segmento ativo mapeado, segmentos
+ * fechados e a base compactada. Recuperação, escrita, group commit e
+ * compactação ficam aqui; o PaymentJournal decide quando chamar cada um
+ * (thread, Redis, métricas).
+ */
+final class JournalFiles {
+    // idHigh(8) + idLow(8) + requestedAtMillis(8) + (amountCents << 8 | processor)(8), little-endian:
+    // no x86/arm o get em massa do replay vira cópia de memória, sem inverter bytes
+    static final int RECORD_SIZE = 32;
+    // Fechados acumulados antes de anexar à base
+    static final int COMPACT_SEGMENTS = 4;
+    private static final int REPLAY_CHUNK = 8192;
+    private static final String RUN_FILE = "run.id";
+
+    interface RecordVisitor {
+        void visit(long idHigh, long idLow, long requestedAtMillis, long amountCents, int processor);
+    }
+
+    private final Path dir;
+    private final int segmentRecords;
+
+    private final Object lock = new Object();
+    // Tudo abaixo protegido por lock
+    private MappedByteBuffer active;
+    private long activeSeq;
+    private int activeCount;
+    private int flushedCount;
+    private final List<Path> closedSegments = new ArrayList<>();
+    private long baseSeq = -1;
+    private long baseRecords;
+
+    JournalFiles(Path dir, int segmentRecords) {
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+    }
+
+    // ===== Execução dona do journal =====
+
+    /** Execução a que os arquivos pertencem; null se nunca foi gravada. */
+    String runId() throws IOException {
+        Path file = dir.resolve(RUN_FILE);
+        return Files.exists(file) ? Files.readString(file, StandardCharsets.US_ASCII).trim() : null;
+    }
+
+    /** Apaga os pagamentos de outra execução e passa o diretório para runId. Só antes do recover(). */
+    void reset(String runId) throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".journal") || name.endsWith(".tmp")) Files.delete(file);
+            }
+        }
+        markRun(runId);
+    }
+
+    // ===== Boot =====
+
+    /**
+     * Limpa o que um crash deixou pela metade, reconstrói o filtro de dedup (e
+     * o agregado local no modo peer) e abre um segmento novo para escrita.
+     * Devolve os registros lidos.
+     */
+    long recover() throws IOException {
+        Files.createDirectories(dir);
+
+        long base = -1;
+        long records = 0;
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file); // Compactação interrompida
+                } else if (name.startsWith("base-")) {
+                    if (sequence(name) > base) {
+                        base = sequence(name);
+                        records = baseRecords(name);
+                    }
+                } else if (name.startsWith("segment-")) {
+                    segments.add(sequence(name));
+                }
+            }
+        }
+        segments.sort(null);
+
+        // Base mais nova já contém todo segmento com seq <= a dela
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("base-") && sequence(name) != base) Files.delete(file);
+            }
+        }
+        for (long seq : segments) {
+            if (seq <= base) Files.deleteIfExists(segmentPath(seq));
+        }
+        long newest = base;
+        segments.removeIf(seq -> seq <= newest);
+
+        List<Path> files = new ArrayList<>();
+        if (base >= 0) {
+            // Anexo interrompido antes do rename: o que passou do tamanho do nome ainda está nos segmentos
+            Path path = basePath(base, records);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(records * RECORD_SIZE);
+            }
+            // Base mais curta que o nome (disco perdeu o fim): o nome passa a dizer o que existe, senão o
+            // próximo anexo começaria depois de um buraco de zeros que o replay lê como fim
+            long present = countRecords(path);
+            if (present < records) {
+                records = present;
+                Path renamed = basePath(base, records);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(records * RECORD_SIZE);
+                }
+                Files.move(path, renamed, StandardCopyOption.ATOMIC_MOVE);
+                path = renamed;
+            }
+            files.add(path);
+        }
+        for (long seq : segments) {
+            files.add(segmentPath(seq));
+        }
+        // O filtro de dedup só guarda os mais recentes - os ids antigos seriam sobrescritos de qualquer jeito
+        long total = 0;
+        for (Path file : files) {
+            total += countRecords(file);
+        }
+        long skipDedup = Math.max(0, total - IdempotencyGuard.FILTER_CAPACITY);
+
+        long replayedRecords = 0;
+        for (Path file : files) {
+            replayedRecords += replay(file, skipDedup - replayedRecords);
+        }
+
+        synchronized (lock) {
+            baseSeq = base;
+            baseRecords = records;
+            for (long seq : segments) {
+                closedSegments.add(segmentPath(seq));
+            }
+            // Segmento do processo anterior fica como está (fechado); escrita sempre num novo
+            long last = segments.isEmpty() ? base : segments.get(segments.size() - 1);
+            mapActive(Math.max(last, 0) + 1);
+        }
+        return replayedRecords;
+    }
+
+    // segment-<seq>.journal / base-<seq>-<registros>.journal
+    private static long sequence(String name) {
+        int start = name.indexOf('-') + 1;
+        int end = name.indexOf('-', start);
+        return Long.parseLong(name.substring(start, end == -1 ? name.indexOf('.') : end));
+    }
+
+    private static long baseRecords(String name) {
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve(String.format("segment-%010d.journal", seq));
+    }
+
+    private Path basePath(long seq, long records) {
+        return dir.resolve(String.format("base-%010d-%012d.journal", seq, records));
+    }
+
+    /**
+     * Caminho do boot: lê em blocos com get em massa do LongBuffer, separa por
+     * processor e anexa ao agregado de uma vez. Os primeiros skipDedup registros
+     * não passam pelo filtro de dedup. Agregado local só existe no modo peer; no
+     * modo redis quem agrega é o Redis (ver reseed).
+     */
+    private static long replay(Path file, long skipDedup) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return 0;
+            LongBuffer longs = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+
+            int processors = PaymentSummaryEngine.PROCESSORS.length;
+            long[] chunk = new long[REPLAY_CHUNK * 4];
+            long[][] millis = new long[processors][REPLAY_CHUNK];
+            long[][] cents = new long[processors][REPLAY_CHUNK];
+            int[] counts = new int[processors];
+
+            long records = 0;
+            boolean end = false;
+            while (!end && longs.remaining() >= 4) {
+                int n = Math.min(REPLAY_CHUNK, longs.remaining() / 4);
+                longs.get(chunk, 0, n * 4);
+                for (int i = 0; i < n; i++) {
+                    int at = i * 4;
+                    long word = chunk[at + 3];
+                    int processor = (int) (word & 0xFF);
+                    if (chunk[at + 2] == 0 || processor >= processors) {
+                        end = true; // Fim do segmento (ou lixo depois dele)
+                        break;
+                    }
+                    if (records >= skipDedup) IdempotencyGuard.firstSeen(chunk[at], chunk[at + 1]);
+                    millis[processor][counts[processor]] = chunk[at + 2];
+                    cents[processor][counts[processor]++] = word >>> 8;
+                    records++;
+                }
+                for (int p = 0; p < processors; p++) {
+                    if (PaymentSummaryEngine.PEER_MODE) LocalSummaryLedger.addAll(p, millis[p], cents[p], counts[p]);
+                    counts[p] = 0;
+                }
+            }
+            return records;
+        }
+    }
+
+    /** Varredura registro a registro (reseed); segmentos terminam no primeiro registro vazio. */
+    static long scan(Path file, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            long records = 0;
+            for (int pos = 0; pos + RECORD_SIZE <= size; pos += RECORD_SIZE) {
+                long millis = buffer.getLong(pos + 16);
+                long word = buffer.getLong(pos + 24);
+                if (millis == 0 || (word & 0xFF) >= PaymentSummaryEngine.PROCESSORS.length) break;
+                visitor.visit(buffer.getLong(pos), buffer.getLong(pos + 8), millis, word >>> 8, (int) (word & 0xFF));
+                records++;
+            }
+            return records;
+        }
+    }
+
+    /** Todos os arquivos com pagamentos, em ordem de escrita (base, fechados, ativo). */
+    List<Path> files() {
+        List<Path> files = new ArrayList<>();
+        synchronized (lock) {
+            if (baseSeq >= 0) files.add(basePath(baseSeq, baseRecords));
+            files.addAll(closedSegments);
+            if (active != null) files.add(segmentPath(activeSeq));
+        }
+        return files;
+    }
+
+    /** Grava a execução dona dos arquivos sem mexer nos pagamentos. */
+    void markRun(String runId) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(RUN_FILE + ".tmp");
+        Files.writeString(tmp, runId, StandardCharsets.US_ASCII);
+        Files.move(tmp, dir.resolve(RUN_FILE), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ===== Escrita =====
+
+    void append(long idHigh, long idLow, long requestedAtMillis, long amountCents, int processor) throws IOException {
+        synchronized (lock) {
+            if (activeCount == segmentRecords) rollover();
+            int pos = activeCount * RECORD_SIZE;
+            active.putLong(pos, idHigh);
+            active.putLong(pos + 8, idLow);
+            active.putLong(pos + 24, amountCents << 8 | processor);
+            // millis por último: registro com millis 0 marca o fim do segmento
+            active.putLong(pos + 16, requestedAtMillis);
+            activeCount++;
+        }
+    }
+
+    private void mapActive(long seq) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(seq), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // O mapeamento continua válido depois de fechar o canal
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+            active.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        activeSeq = seq;
+        activeCount = 0;
+        flushedCount = 0;
+    }
+
+    private void rollover() throws IOException {
+        active.force();
+        closedSegments.add(segmentPath(activeSeq));
+        mapActive(activeSeq + 1);
+    }
+
+    /** Group commit: force() só do trecho escrito desde o último. */
+    void flush() {
+        MappedByteBuffer buffer;
+        int from;
+        int to;
+        synchronized (lock) {
+            buffer = active;
+            from = flushedCount;
+            to = activeCount;
+            flushedCount = to;
+        }
+        if (to > from) {
+            buffer.force(from * RECORD_SIZE, (to - from) * RECORD_SIZE);
+        }
+    }
+
+    // Anexa os fechados ao fim da base: I/O proporcional ao que entrou, não ao histórico inteiro
+    void compactIfNeeded() throws IOException {
+        List<Path> segments;
+        long base;
+        long records;
+        synchronized (lock) {
+            if (closedSegments.size() < COMPACT_SEGMENTS) return;
+            segments = new ArrayList<>(closedSegments);
+            base = baseSeq;
+            records = baseRecords;
+        }
+
+        long newBase = sequence(segments.get(segments.size() - 1).getFileName().toString());
+        // Primeira compactação: base nova nasce como .tmp (o boot apaga se não chegar ao rename)
+        Path current = base >= 0 ? basePath(base, records) : dir.resolve("base.journal.tmp");
+        try (FileChannel out = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.truncate(records * RECORD_SIZE);
+            out.position(records * RECORD_SIZE);
+            for (Path segment : segments) {
+                long count = countRecords(segment);
+                copy(segment, count * RECORD_SIZE, out);
+                records += count;
+            }
+            out.force(true);
+        }
+        // Rename atômico: no boot a base nova já cobre os segmentos, mesmo que o delete abaixo não aconteça;
+        // antes dele, o nome antigo faz o boot cortar o anexo pela metade
+        Files.move(current, basePath(newBase, records), StandardCopyOption.ATOMIC_MOVE);
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+
+        synchronized (lock) {
+            closedSegments.removeAll(segments);
+            baseSeq = newBase;
+            baseRecords = records;
+        }
+    }
+
+    private static void copy(Path source, long length, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += in.transferTo(copied, length - copied, out);
+            }
+        }
+    }
+
+    // Registros são escritos em ordem: busca binária pelo primeiro vazio
+    static long countRecords(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Leitura posicional em long: a base passa do alcance de um índice int muito antes do disco acabar
+            ByteBuffer millis = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            long lo = 0;
+            long hi = channel.size() / RECORD_SIZE;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                millis.clear();
+                channel.read(millis, mid * RECORD_SIZE + 16); // Arquivo local: os 8 bytes vêm numa leitura só
+                if (millis.getLong(0) != 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
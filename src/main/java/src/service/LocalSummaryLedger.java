@@ -0,0 +1,106 @@
+package src.service;
+
+import java.util.Arrays;
+
+import src.model.PaymentProcessorSummary;
+
+/**
+ * Agregado dos pagamentos processados por esta instância (modo peer): um par
+ * (requestedAtMillis, centavos) por pagamento em arrays primitivos, por
+ * processor. Janela [from, to] exata, sem arredondar para bucket.
+ */
+final class LocalSummaryLedger {
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    private static final class Series {
+        long[] millis = new long[INITIAL_CAPACITY];
+        long[] cents = new long[INITIAL_CAPACITY];
+        int size;
+        // Soma de cents[0, size) - o resumo sem janela não varre a série
+        long centsTotal;
+    }
+
+    private static final Series[] series = new Series[PaymentSummaryEngine.PROCESSORS.length];
+
+    static {
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new Series();
+        }
+    }
+
+    private LocalSummaryLedger() {
+    }
+
+    static void add(int processor, long requestedAtMillis, long amountCents) {
+        Series s = series[processor];
+        synchronized (s) {
+            if (s.size == s.millis.length) {
+                s.millis = Arrays.copyOf(s.millis, s.size * 2);
+                s.cents = Arrays.copyOf(s.cents, s.size * 2);
+            }
+            s.millis[s.size] = requestedAtMillis;
+            s.cents[s.size] = amountCents;
+            s.size++;
+            s.centsTotal += amountCents;
+        }
+    }
+
+    // Replay do journal: cresce uma vez e copia o bloco inteiro
+    static void addAll(int processor, long[] millis, long[] cents, int count) {
+        Series s = series[processor];
+        synchronized (s) {
+            if (s.size + count > s.millis.length) {
+                int capacity = Math.max(s.millis.length * 2, s.size + count);
+                s.millis = Arrays.copyOf(s.millis, capacity);
+                s.cents = Arrays.copyOf(s.cents, capacity);
+            }
+            System.arraycopy(millis, 0, s.millis, s.size, count);
+            System.arraycopy(cents, 0, s.cents, s.size, count);
+            s.size += count;
+            for (int i = 0; i < count; i++) {
+                s.centsTotal += cents[i];
+            }
+        }
+    }
+
+    static void clear() {
+        for (Series s : series) {
+            synchronized (s) {
+                s.size = 0;
+                s.centsTotal = 0;
+            }
+        }
+    }
+
+    static PaymentProcessorSummary[] query(long fromMillis, long toMillis) {
+        if (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE) return totals();
+        PaymentProcessorSummary[] result = new PaymentProcessorSummary[series.length];
+        for (int p = 0; p < series.length; p++) {
+            Series s = series[p];
+            long count = 0;
+            long cents = 0;
+            synchronized (s) {
+                for (int i = 0; i < s.size; i++) {
+                    long millis = s.millis[i];
+                    if (millis >= fromMillis && millis <= toMillis) {
+                        count++;
+                        cents += s.cents[i];
+                    }
+                }
+            }
+            result[p] = new PaymentProcessorSummary(count, cents);
+        }
+        return result;
+    }
+
+    private static PaymentProcessorSummary[] totals() {
+        PaymentProcessorSummary[] result = new PaymentProcessorSummary[series.length];
+        for (int p = 0; p < series.length; p++) {
+            Series s = series[p];
+            synchronized (s) {
+                result[p] = new PaymentProcessorSummary(s.size, s.centsTotal);
+            }
+        }
+        return result;
+    }
+}
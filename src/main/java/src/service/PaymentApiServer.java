@@ -1,202 +1,182 @@
 package src.service;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.math.BigDecimal;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CompletableFuture;
-
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
-
-import src.model.PaymentRequest;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import src.http.HttpConnection;
+import src.http.HttpResponses;
+import src.http.NioHttpServer;
+import src.http.RequestHandler;
+import src.metrics.Counter;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+import src.model.PaymentProcessorSummary;
 import src.processor.SimplePaymentProcessor;
 
 public class PaymentApiServer {
-    // Cache do valor amount fixo
-    private static volatile String cachedAmount = null;
-    private static volatile BigDecimal cachedAmountBD = null;
+    // Parcial desta instância para o peer (modo SUMMARY_MODE=peer)
+    static final String PARTIAL_SUMMARY_PATH = "/internal/payments-summary";
 
     public static void start(int port) throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-
-        // Handlers específicos por método - ZERO overhead de verificação
-        server.createContext("/payment", new PostPaymentHandler());
-        server.createContext("/payments-summary", new GetPaymentSummaryHandler());
-
-        // SEM executor customizado - usa o padrão do HttpServer (mais eficiente para
-        // I/O simples)
-        server.start();
+        create(new InetSocketAddress(port)).start();
     }
 
-    // Handler ESPECÍFICO para POST /payment - SÍNCRONO para máxima velocidade
-    static class PostPaymentHandler implements HttpHandler {
-        private static final byte[] CORRELATION_PATTERN = "\"correlationId\":\"".getBytes(StandardCharsets.UTF_8);
-        private static final byte[] AMOUNT_PATTERN = "\"amount\":\"".getBytes(StandardCharsets.UTF_8);
-        private static final ThreadLocal<byte[]> BUFFER_TL = ThreadLocal.withInitial(() -> new byte[512]);
-
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            byte[] buffer = BUFFER_TL.get();
-            int totalRead = readRequestBody(exchange.getRequestBody(), buffer);
-
-            String correlationId = extractFieldFromBuffer(buffer, CORRELATION_PATTERN, totalRead);
-
-            String amount = getOrExtractAmount(buffer, totalRead);
-
-            // Enqueue DIRETO sem async overhead
-            SimplePaymentProcessor.enqueuePayment(new PaymentRequest(correlationId, amount));
+    // Selector único, keep-alive, rotas por path exato - ZERO overhead por request
+    public static NioHttpServer create(InetSocketAddress address) {
+        return new NioHttpServer(address)
+                .route("/payments", new PostPaymentHandler())
+                .route("/payments-summary", new GetPaymentSummaryHandler())
+                .route("/metrics", new MetricsHandler())
+                .route(PARTIAL_SUMMARY_PATH, new PartialSummaryHandler());
+    }
 
-            // Response IMEDIATA
-            sendSuccessResponseFast(exchange);
-        }
+    // Handler ESPECÍFICO para POST /payments - SÍNCRONO na thread do selector
+    static class PostPaymentHandler implements RequestHandler {
+        private static final LatencyHistogram ingestLatency = Metrics.histogram("payments_ingest_seconds",
+                "Parse + enqueue do POST /payments na thread do selector", "");
+        private static final Counter rejected = Metrics.counter("payments_rejected_total",
+                "POST /payments respondidos com 400", "");
 
-        private String getOrExtractAmount(byte[] buffer, int totalRead) {
-            // Se já temos cached, usa (ultra-rápido)
-            if (cachedAmount != null) {
-                return cachedAmount;
-            }
+        // Só a thread do selector chama handle() - o scanner é reaproveitado
+        private final PaymentBodyScanner scanner = new PaymentBodyScanner();
 
-            // Primeira requisição - extrai amount e cacheia
-            String amount = extractFieldFromBuffer(buffer, AMOUNT_PATTERN, totalRead);
-            if (amount != null) {
-                cachedAmount = amount;
-                cachedAmountBD = null; // Limpa cache do BigDecimal
-                return amount;
+        @Override
+        public void handle(HttpConnection connection) {
+            long start = System.nanoTime();
+            if (!scanner.scan(connection.body(), connection.bodyLength())) {
+                rejected.increment();
+                connection.send(HttpResponses.BAD_REQUEST);
+                return;
             }
 
-            // Fallback
-            cachedAmount = "100.00";
-            return cachedAmount;
-        }
-
-        private int readRequestBody(InputStream is, byte[] buffer) throws IOException {
-            int totalRead = 0;
-            int bytesRead;
+            // Enqueue DIRETO em primitivos - nenhuma String, nenhum objeto
+            SimplePaymentProcessor.enqueuePayment(scanner.idHigh, scanner.idLow, scanner.amountCents);
 
-            while (totalRead < buffer.length
-                    && (bytesRead = is.read(buffer, totalRead, buffer.length - totalRead)) != -1) {
-                totalRead += bytesRead;
-            }
+            ingestLatency.recordSince(start);
 
-            return totalRead;
-        }
-
-        private String extractFieldFromBuffer(byte[] buffer, byte[] pattern, int totalRead) {
-            int patternIndex = indexOf(buffer, pattern, totalRead);
-            if (patternIndex != -1) {
-                int start = patternIndex + pattern.length;
-                int end = start;
-
-                while (end < totalRead && buffer[end] != '"') {
-                    end++;
-                }
-
-                if (end < totalRead) {
-                    return new String(buffer, start, end - start, StandardCharsets.UTF_8);
-                }
-            }
-            return null;
-        }
-
-        private int indexOf(byte[] array, byte[] target, int arrayLength) {
-            for (int i = 0; i <= arrayLength - target.length; i++) {
-                boolean found = true;
-                for (int j = 0; j < target.length; j++) {
-                    if (array[i + j] != target[j]) {
-                        found = false;
-                        break;
-                    }
-                }
-                if (found)
-                    return i;
-            }
-            return -1;
+            // Response IMEDIATA - 202 pré-codificado
+            connection.send(HttpResponses.ACCEPTED);
         }
     }
 
     // Handler para GET mantém async apenas onde necessário
-    static class GetPaymentSummaryHandler implements HttpHandler {
-        private static volatile String cachedResponse = null;
-        private static volatile long cacheTime = 0;
-        private static final long CACHE_TTL_MS = 50; // Aumentado para reduzir calls Redis
+    static class GetPaymentSummaryHandler implements RequestHandler {
+        private static final byte[] EMPTY_RESPONSE = "{\"default\":{\"totalRequests\":0,\"totalAmount\":0.00},\"fallback\":{\"totalRequests\":0,\"totalAmount\":0.00}}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // Modo peer: resposta só com a parte local quando o peer não respondeu a tempo
+        private static final byte[] PARTIAL_HEADER = HttpResponses.header("X-Summary-Partial", "peer-unreachable");
+        private static final Counter peerFailures = Metrics.counter("payments_summary_peer_failures_total",
+                "Resumos servidos só com a parte local (peer fora ou lento)", "");
+
+        private static final Counter emptyFallbacks = Metrics.counter("payments_summary_fallbacks_total",
+                "Resumos respondidos zerados porque o Redis falhou ou demorou", "");
 
         @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            long now = System.currentTimeMillis();
-            if (cachedResponse != null && (now - cacheTime) < CACHE_TTL_MS) {
-                sendJsonResponseFast(exchange, cachedResponse);
+        public void handle(HttpConnection connection) {
+            String query = connection.query();
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            try {
+                String fromParam = queryParam(query, "from");
+                String toParam = queryParam(query, "to");
+                if (fromParam != null) from = Instant.parse(fromParam).toEpochMilli();
+                if (toParam != null) to = Instant.parse(toParam).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                connection.send(HttpResponses.BAD_REQUEST);
+                return;
+            }
+            // Modo peer não depende do Redis: sem janela são os totais locais + os do peer
+            if (PaymentSummaryEngine.PEER_MODE) {
+                respondWithPeer(connection, from, to);
                 return;
             }
 
-            // Async necessário apenas para Redis
-            CompletableFuture<Long> defaultRequestsFut = RedisAsyncManager.getTotalRequests();
+            // Sem janela: o JSON já está pronto no snapshot (espelho dos buckets); fora de sincronia, vai ao Redis
+            if (from == Long.MIN_VALUE && to == Long.MAX_VALUE) {
+                byte[] ready = SummarySnapshot.json();
+                if (ready != null) {
+                    connection.sendJson(ready);
+                    return;
+                }
+            }
 
-            defaultRequestsFut
+            // Async necessário apenas para Redis - a resposta volta pela thread do selector
+            PaymentSummaryEngine.query(from, to)
                     .orTimeout(50, java.util.concurrent.TimeUnit.MILLISECONDS) // Timeout MUITO agressivo
-                    .whenComplete((defaultRequests, throwable) -> {
+                    .whenComplete((summaries, throwable) -> {
                         try {
-                            String response;
-                            if (throwable != null || defaultRequests == null) {
-                                response = "{\"default\":{\"totalRequests\":0,\"totalAmount\":0.00},\"fallback\":{\"totalRequests\":0,\"totalAmount\":0.00}}";
-                            } else {
-                                BigDecimal defaultAmount = calculateTotalAmountFast(defaultRequests);
-
-                                // String concatenation DIRETA (mais rápida que StringBuilder para strings
-                                // pequenas)
-                                response = "{\"default\":{\"totalRequests\":" + defaultRequests +
-                                        ",\"totalAmount\":" + defaultAmount +
-                                        "},\"fallback\":{\"totalRequests\":0,\"totalAmount\":0.00}}";
+                            if (throwable != null || summaries == null) {
+                                emptyFallbacks.increment();
+                                connection.sendJson(EMPTY_RESPONSE);
+                                return;
                             }
 
-                            cachedResponse = response;
-                            cacheTime = System.currentTimeMillis();
-                            sendJsonResponseFast(exchange, response);
+                            connection.sendJson(PaymentSummaryEngine.toJson(summaries).getBytes(StandardCharsets.UTF_8));
                         } catch (Exception e) {
-                            sendJsonResponseFast(exchange,
-                                    "{\"default\":{\"totalRequests\":0,\"totalAmount\":0.00},\"fallback\":{\"totalRequests\":0,\"totalAmount\":0.00}}");
+                            emptyFallbacks.increment();
+                            connection.sendJson(EMPTY_RESPONSE);
                         }
                     });
         }
 
-        private BigDecimal calculateTotalAmountFast(long totalRequests) {
-            if (totalRequests == 0)
-                return BigDecimal.ZERO;
+        // Local agora + parcial do peer com espera limitada (PEER_SUMMARY_TIMEOUT_MS)
+        private static void respondWithPeer(HttpConnection connection, long from, long to) {
+            PaymentProcessorSummary[] local = LocalSummaryLedger.query(from, to);
+            PeerSummaryClient.fetch(from, to).whenComplete((peer, throwable) -> {
+                if (throwable != null) {
+                    peerFailures.increment();
+                    connection.sendJson(PaymentSummaryEngine.toJson(local).getBytes(StandardCharsets.UTF_8),
+                            PARTIAL_HEADER);
+                    return;
+                }
+                connection.sendJson(PaymentSummaryEngine.toJson(PaymentSummaryEngine.sum(local, peer))
+                        .getBytes(StandardCharsets.UTF_8));
+            });
+        }
 
-            if (cachedAmountBD == null && cachedAmount != null) {
-                try {
-                    cachedAmountBD = new BigDecimal(cachedAmount);
-                } catch (NumberFormatException e) {
-                    return BigDecimal.ZERO;
+        static String queryParam(String query, String name) {
+            if (query == null) return null;
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0 && pair.regionMatches(0, name, 0, eq) && eq == name.length()) {
+                    return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
                 }
             }
-
-            return cachedAmountBD != null ? cachedAmountBD.multiply(BigDecimal.valueOf(totalRequests))
-                    : BigDecimal.ZERO;
+            return null;
         }
     }
 
-    // Response methods ULTRA-OTIMIZADOS
-    private static void sendSuccessResponseFast(HttpExchange exchange) {
-        try {
-            exchange.sendResponseHeaders(202, -1); // -1 = no body, mais rápido
-        } catch (IOException ignored) {
+    // Scrape do Prometheus - raro, pode montar o texto na hora
+    static class MetricsHandler implements RequestHandler {
+        @Override
+        public void handle(HttpConnection connection) {
+            connection.sendText(Metrics.scrape());
         }
     }
-    
-    private static void sendJsonResponseFast(HttpExchange exchange, String response) {
-        try {
-            byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, responseBytes.length);
-
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+
+    // Parcial só desta instância, janela em epoch millis - chamado pelo peer, nunca repassa adiante
+    static class PartialSummaryHandler implements RequestHandler {
+        @Override
+        public void handle(HttpConnection connection) {
+            String query = connection.query();
+            long from;
+            long to;
+            try {
+                String fromParam = GetPaymentSummaryHandler.queryParam(query, "from");
+                String toParam = GetPaymentSummaryHandler.queryParam(query, "to");
+                from = fromParam == null ? Long.MIN_VALUE : Long.parseLong(fromParam);
+                to = toParam == null ? Long.MAX_VALUE : Long.parseLong(toParam);
+            } catch (NumberFormatException e) {
+                connection.send(HttpResponses.BAD_REQUEST);
+                return;
             }
-        } catch (IOException ignored) {
+            connection.sendJson(PaymentSummaryEngine.toJson(LocalSummaryLedger.query(from, to))
+                    .getBytes(StandardCharsets.UTF_8));
         }
     }
 }
\ No newline at end of file
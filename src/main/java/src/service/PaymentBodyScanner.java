@@ -0,0 +1,258 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+
+import src.model.Amounts;
+import src.model.Uuids;
+
+/**
+ * Scanner de uma passada, sem alocação, para o body do POST /payments:
+ * {"correlationId": "<uuid>", "amount": 19.90}. Aceita espaços em qualquer
+ * lugar, chaves em qualquer ordem e chaves desconhecidas (o valor é pulado).
+ * Amount como número JSON ou string; no máximo 2 casas significativas, sem
+ * expoente, entre 0.01 e Amounts.MAX_CENTS. correlationId só em hex minúsculo
+ * (a forma que Uuids.write devolve). Valores de chaves desconhecidas seguem a
+ * gramática JSON. Qualquer desvio rejeita no primeiro byte ruim.
+ *
+ * Os passos recebem e devolvem a posição (FAIL = rejeitado) para o cursor
+ * ficar em registrador. Resultado nos campos após scan() == true; uma
+ * instância por handler - só a thread do selector usa.
+ */
+final class PaymentBodyScanner {
+    private static final int FAIL = -1;
+    private static final byte[] CORRELATION_ID = "correlationId".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    // Profundidade máxima de objetos/arrays aninhados em chaves desconhecidas
+    private static final int MAX_SKIP_DEPTH = 16;
+
+    long idHigh;
+    long idLow;
+    long amountCents;
+
+    boolean scan(byte[] buf, int end) {
+        boolean hasId = false;
+        boolean hasAmount = false;
+
+        int pos = skipWhitespace(buf, 0, end);
+        if (pos == end || buf[pos] != '{') return false;
+        pos = skipWhitespace(buf, pos + 1, end);
+
+        while (true) {
+            if (pos == end || buf[pos] != '"') return false;
+            int keyStart = pos + 1;
+            pos = skipStringBody(buf, keyStart, end);
+            if (pos == FAIL) return false;
+            int keyEnd = pos - 1;
+
+            pos = skipWhitespace(buf, pos, end);
+            if (pos == end || buf[pos] != ':') return false;
+            pos = skipWhitespace(buf, pos + 1, end);
+
+            if (keyEquals(buf, keyStart, keyEnd, CORRELATION_ID)) {
+                if (hasId) return false;
+                pos = scanCorrelationId(buf, pos, end);
+                hasId = true;
+            } else if (keyEquals(buf, keyStart, keyEnd, AMOUNT)) {
+                if (hasAmount) return false;
+                pos = scanAmount(buf, pos, end);
+                hasAmount = true;
+            } else {
+                pos = skipValue(buf, pos, end, 0);
+            }
+            if (pos == FAIL) return false;
+
+            pos = skipWhitespace(buf, pos, end);
+            if (pos == end) return false;
+            byte b = buf[pos++];
+            if (b == '}') break;
+            if (b != ',') return false;
+            pos = skipWhitespace(buf, pos, end);
+        }
+
+        return skipWhitespace(buf, pos, end) == end && hasId && hasAmount;
+    }
+
+    // "8-4-4-4-12": validação e conversão na mesma passada
+    private int scanCorrelationId(byte[] buf, int pos, int end) {
+        int start = pos + 1;
+        int close = start + Uuids.TEXT_LENGTH;
+        if (close >= end || buf[pos] != '"' || buf[close] != '"') return FAIL;
+        if (buf[start + 8] != '-' || buf[start + 13] != '-' || buf[start + 18] != '-' || buf[start + 23] != '-') {
+            return FAIL;
+        }
+
+        long a = hexRun(buf, start, start + 8);
+        long b = hexRun(buf, start + 9, start + 13);
+        long c = hexRun(buf, start + 14, start + 18);
+        long d = hexRun(buf, start + 19, start + 23);
+        long e = hexRun(buf, start + 24, close);
+        if ((a | b | c | d | e) < 0) return FAIL;
+
+        idHigh = (a << 32) | (b << 16) | c;
+        idLow = (d << 48) | e;
+        return close + 1;
+    }
+
+    private int scanAmount(byte[] buf, int pos, int end) {
+        boolean quoted = pos < end && buf[pos] == '"';
+        if (quoted) pos++;
+
+        int intStart = pos;
+        long units = 0;
+        while (pos < end && isDigit(buf[pos])) {
+            if (units > Long.MAX_VALUE / 1000) return FAIL;
+            units = units * 10 + (buf[pos++] - '0');
+        }
+        int intDigits = pos - intStart;
+        // JSON não aceita zero à esquerda ("019.90")
+        if (intDigits == 0 || (intDigits > 1 && buf[intStart] == '0')) return FAIL;
+
+        long fraction = 0;
+        if (pos < end && buf[pos] == '.') {
+            int fractionStart = ++pos;
+            while (pos < end && isDigit(buf[pos])) {
+                int digit = buf[pos] - '0';
+                int index = pos - fractionStart;
+                if (index < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (digit != 0) {
+                    return FAIL; // Fração de centavo
+                }
+                pos++;
+            }
+            int fractionDigits = pos - fractionStart;
+            if (fractionDigits == 0) return FAIL;
+            if (fractionDigits == 1) fraction *= 10;
+        }
+
+        if (quoted) {
+            if (pos == end || buf[pos] != '"') return FAIL;
+            pos++;
+        } else if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            return FAIL;
+        }
+
+        amountCents = units * 100 + fraction;
+        // Acima de MAX_CENTS o ledger e o journal truncariam o valor em silêncio - melhor um 400 agora
+        return amountCents > 0 && amountCents <= Amounts.MAX_CENTS ? pos : FAIL;
+    }
+
+    // Pula o valor de uma chave desconhecida (string, número, literal, objeto ou array)
+    private static int skipValue(byte[] buf, int pos, int end, int depth) {
+        if (pos == end) return FAIL;
+        byte first = buf[pos];
+        if (first == '"') return skipStringBody(buf, pos + 1, end);
+
+        if (first == '{' || first == '[') {
+            if (depth == MAX_SKIP_DEPTH) return FAIL;
+            byte close = first == '{' ? (byte) '}' : (byte) ']';
+            pos = skipWhitespace(buf, pos + 1, end);
+            if (pos < end && buf[pos] == close) return pos + 1;
+            while (true) {
+                if (first == '{') {
+                    if (pos == end || buf[pos] != '"') return FAIL;
+                    pos = skipStringBody(buf, pos + 1, end);
+                    if (pos == FAIL) return FAIL;
+                    pos = skipWhitespace(buf, pos, end);
+                    if (pos == end || buf[pos] != ':') return FAIL;
+                    pos = skipWhitespace(buf, pos + 1, end);
+                }
+                pos = skipValue(buf, pos, end, depth + 1);
+                if (pos == FAIL) return FAIL;
+                pos = skipWhitespace(buf, pos, end);
+                if (pos == end) return FAIL;
+                byte next = buf[pos++];
+                if (next == close) return pos;
+                if (next != ',') return FAIL;
+                pos = skipWhitespace(buf, pos, end);
+            }
+        }
+
+        if (first == 't') return skipLiteral(buf, pos, end, TRUE);
+        if (first == 'f') return skipLiteral(buf, pos, end, FALSE);
+        if (first == 'n') return skipLiteral(buf, pos, end, NULL);
+        return skipNumber(buf, pos, end);
+    }
+
+    // O que vem depois ("truex", "1a") cai na checagem de ',' / '}' / ']' de quem chamou
+    private static int skipLiteral(byte[] buf, int pos, int end, byte[] literal) {
+        if (end - pos < literal.length) return FAIL;
+        for (int i = 0; i < literal.length; i++) {
+            if (buf[pos + i] != literal[i]) return FAIL;
+        }
+        return pos + literal.length;
+    }
+
+    // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+    private static int skipNumber(byte[] buf, int pos, int end) {
+        if (pos < end && buf[pos] == '-') pos++;
+        if (pos == end || !isDigit(buf[pos])) return FAIL;
+        if (buf[pos++] != '0') pos = skipDigits(buf, pos, end);
+
+        if (pos < end && buf[pos] == '.') {
+            int fractionStart = ++pos;
+            pos = skipDigits(buf, pos, end);
+            if (pos == fractionStart) return FAIL;
+        }
+        if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            if (pos < end && (buf[pos] == '+' || buf[pos] == '-')) pos++;
+            int exponentStart = pos;
+            pos = skipDigits(buf, pos, end);
+            if (pos == exponentStart) return FAIL;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(byte[] buf, int pos, int end) {
+        while (pos < end && isDigit(buf[pos])) pos++;
+        return pos;
+    }
+
+    // A partir do byte depois da aspa de abertura; devolve a posição depois da aspa de fechamento
+    private static int skipStringBody(byte[] buf, int pos, int end) {
+        while (pos < end) {
+            byte c = buf[pos++];
+            if (c == '"') return pos;
+            if (c == '\\') pos++;
+            else if (c >= 0 && c < 0x20) return FAIL; // Controle cru é inválido em JSON
+        }
+        return FAIL;
+    }
+
+    // Dígitos hex [from, to) -> valor (até 12 dígitos cabem com folga) ou -1
+    private static long hexRun(byte[] buf, int from, int to) {
+        long value = 0;
+        int invalid = 0;
+        for (int i = from; i < to; i++) {
+            int v = Uuids.hexValue(buf[i]);
+            invalid |= v;
+            value = (value << 4) | (v & 0xF);
+        }
+        return invalid < 0 ? -1 : value;
+    }
+
+    private static boolean keyEquals(byte[] buf, int start, int keyEnd, byte[] expected) {
+        if (keyEnd - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(byte[] buf, int pos, int end) {
+        while (pos < end && isWhitespace(buf[pos])) pos++;
+        return pos;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -0,0 +1,191 @@
+package src.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import src.metrics.Counter;
+import src.metrics.Metrics;
+import src.model.Uuids;
+
+/**
+ * Journal local append-only de todo pagamento aceito por esta instância.
+ * Registros de 32 bytes escritos direto num segmento mapeado em memória; a
+ * thread do journal faz force() do trecho novo a cada JOURNAL_FLUSH_MS (group
+ * commit - quem grava nunca espera o disco). Segmento cheio vira fechado e um
+ * novo é aberto; fechados são anexados ao fim de base-<seq>-<registros>.journal
+ * (o nome diz até onde a base vale), então o replay no boot é uma varredura
+ * sequencial de poucos arquivos e a compactação só escreve o que é novo.
+ * Arquivos e formato ficam em JournalFiles.
+ *
+ * O journal pertence a uma execução, marcada no Redis como "<run>:<época>"
+ * (chave sem TTL: some só se o Redis perder os dados). Redis sem marca no boot
+ * é deployment novo: o journal do anterior é apagado, senão o replay traria
+ * pagamentos que não são desta execução. Época maior que a do journal quer
+ * dizer que o Redis perdeu os dados no meio da execução e quem percebeu
+ * primeiro remarcou; aí, no modo redis, os pagamentos do journal são
+ * regravados - o registro é idempotente.
+ */
+public final class PaymentJournal {
+    private static final boolean ENABLED = !"false"
+            .equalsIgnoreCase(System.getenv().getOrDefault("JOURNAL_ENABLED", "true"));
+    private static final Path DIR = Path.of(System.getenv().getOrDefault("JOURNAL_DIR", "/tmp/payments-journal"));
+    private static final int SEGMENT_RECORDS = Integer
+            .parseInt(System.getenv().getOrDefault("JOURNAL_SEGMENT_RECORDS", "131072"));
+    private static final long FLUSH_MS = Long.parseLong(System.getenv().getOrDefault("JOURNAL_FLUSH_MS", "5"));
+    // Intervalo da conferência da marca no Redis durante a execução
+    private static final long RUN_CHECK_MS = 1000;
+    private static final long BOOT_REDIS_TIMEOUT_MS = 1000;
+    private static final int RESEED_IN_FLIGHT = 1024;
+
+    private static final Counter replayed = Metrics.counter("payments_journal_replayed_total",
+            "Pagamentos reconstruídos do journal no boot", "");
+    private static final Counter reseeded = Metrics.counter("payments_journal_reseeded_total",
+            "Pagamentos reenviados ao Redis a partir do journal", "");
+    private static final Counter resets = Metrics.counter("payments_journal_resets_total",
+            "Journals apagados no boot por serem de outra execução", "");
+    private static final Counter errors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"journal\"");
+
+    private static final JournalFiles files = new JournalFiles(DIR, SEGMENT_RECORDS);
+
+    // Marca "<run>:<época>" que o journal já cobre; só a thread do journal troca depois do open()
+    private static volatile String run;
+    private static volatile boolean open;
+
+    private PaymentJournal() {
+    }
+
+    /**
+     * Confere a execução no Redis, faz o replay (e o reseed, se o Redis perdeu
+     * os dados) e abre o segmento de escrita. Tudo síncrono: chamar depois do
+     * warm-up (que zera agregado e filtro) e antes do dispatcher. Falha de I/O
+     * desliga o journal.
+     */
+    public static void open() {
+        if (!ENABLED) return;
+        try {
+            String local = files.runId();
+            String current = bootRun(local);
+            if (current != null && (local == null || !runOf(current).equals(runOf(local)))) {
+                files.reset(current);
+                resets.increment();
+                local = current;
+            }
+            replayed.add(files.recover());
+
+            if (current != null && epochOf(current) > epochOf(local)) {
+                reseed();
+                files.markRun(current);
+            }
+            run = current != null ? current : local;
+            open = true;
+
+            Thread journal = new Thread(PaymentJournal::journalLoop, "payment-journal");
+            journal.setDaemon(true);
+            journal.start();
+        } catch (IOException e) {
+            errors.increment();
+            System.err.println("Journal disabled: " + e.getMessage());
+        }
+    }
+
+    // Marca do Redis, criada se ainda não existe; null se o Redis não respondeu (journal fica como está)
+    private static String bootRun(String local) {
+        try {
+            String current = RedisAsyncManager.currentRun().get(BOOT_REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (current != null) return current;
+            // Redis sem marca: deployment novo - a execução começa aqui, na época 0
+            return RedisAsyncManager.claimRun(UUID.randomUUID() + ":0")
+                    .get(BOOT_REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    static void append(long idHigh, long idLow, long requestedAtMillis, long amountCents, int processor) {
+        if (!open) return;
+        try {
+            files.append(idHigh, idLow, requestedAtMillis, amountCents, processor);
+        } catch (IOException e) {
+            errors.increment();
+            open = false; // Disco cheio/sumiu: segue sem journal em vez de travar o envio
+        }
+    }
+
+    // ===== Thread do journal: group commit, compactação e conferência da marca =====
+
+    private static void journalLoop() {
+        long nextRunCheck = System.currentTimeMillis() + RUN_CHECK_MS;
+        while (true) {
+            try {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_MS));
+                files.flush();
+                files.compactIfNeeded();
+                long now = System.currentTimeMillis();
+                if (now >= nextRunCheck) {
+                    nextRunCheck = now + RUN_CHECK_MS;
+                    checkRun();
+                }
+            } catch (Exception e) {
+                errors.increment();
+            }
+        }
+    }
+
+    // Marca sumiu = Redis perdeu os dados agora: remarca com a época seguinte (o peer faz o mesmo e o
+    // SET NX escolhe um) e regrava a nossa parte; época maior já remarcada pelo peer também pede reseed
+    private static void checkRun() throws Exception {
+        String known = run;
+        if (known == null) return;
+        String current = RedisAsyncManager.currentRun().get(BOOT_REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (current == null) {
+            current = RedisAsyncManager.claimRun(runOf(known) + ":" + (epochOf(known) + 1))
+                    .get(BOOT_REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        // Outra execução tomou o Redis (deployment novo enquanto este processo ainda vivia): nada a regravar
+        if (current == null || !runOf(current).equals(runOf(known)) || epochOf(current) <= epochOf(known)) return;
+
+        reseed();
+        files.markRun(current);
+        run = current;
+    }
+
+    private static String runOf(String marker) {
+        return marker.substring(0, marker.lastIndexOf(':'));
+    }
+
+    private static long epochOf(String marker) {
+        return marker == null ? 0 : Long.parseLong(marker.substring(marker.lastIndexOf(':') + 1));
+    }
+
+    // Só o modo redis agrega no Redis; no modo peer a parte desta instância já voltou no replay
+    private static void reseed() throws IOException {
+        if (PaymentSummaryEngine.PEER_MODE) return;
+
+        List<CompletableFuture<Boolean>> inFlight = new ArrayList<>(RESEED_IN_FLIGHT);
+        for (Path file : files.files()) {
+            JournalFiles.scan(file, (idHigh, idLow, millis, cents, processor) -> {
+                reseeded.increment();
+                inFlight.add(RedisAsyncManager.recordPayment(Uuids.toString(idHigh, idLow), millis, cents,
+                        PaymentSummaryEngine.PROCESSORS[processor]));
+                if (inFlight.size() == RESEED_IN_FLIGHT) awaitReseed(inFlight);
+            });
+        }
+        awaitReseed(inFlight);
+    }
+
+    // Só contrapressão: false aqui pode ser um retry cujo primeiro envio já gravou (falhas vão para recordFailures)
+    private static void awaitReseed(List<CompletableFuture<Boolean>> inFlight) {
+        for (CompletableFuture<Boolean> future : inFlight) {
+            future.join();
+        }
+        inFlight.clear();
+    }
+}
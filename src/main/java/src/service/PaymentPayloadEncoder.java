@@ -0,0 +1,113 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+
+import src.model.PaymentRequest;
+import src.model.Uuids;
+
+/**
+ * Payload do processor a partir de um template JSON fixo: só os bytes do
+ * correlationId, do amount e do requestedAt são escritos por pagamento.
+ * Sem String.format, sem StringBuilder, sem Instant.toString().
+ */
+final class PaymentPayloadEncoder {
+    static final int MAX_PAYLOAD = 256;
+
+    private static final byte[] PREFIX = ascii("{\"correlationId\":\"");
+    private static final byte[] AFTER_ID = ascii("\",\"amount\":");
+    private static final byte[] AFTER_AMOUNT = ascii(",\"requestedAt\":\"");
+    private static final byte[] SUFFIX = ascii("\"}");
+
+    private PaymentPayloadEncoder() {
+    }
+
+    /** Escreve o payload em dst e retorna o tamanho. */
+    static int encode(PaymentRequest payment, byte[] dst) {
+        int pos = put(PREFIX, dst, 0);
+        pos = Uuids.write(payment.idHigh, payment.idLow, dst, pos);
+        pos = put(AFTER_ID, dst, pos);
+        pos = writeAmount(payment.amountCents, dst, pos);
+        pos = put(AFTER_AMOUNT, dst, pos);
+        pos = writeIsoInstant(payment.requestedAtMillis, dst, pos);
+        return put(SUFFIX, dst, pos);
+    }
+
+    // 1990 -> "19.90"
+    static int writeAmount(long cents, byte[] dst, int pos) {
+        pos = writeLong(cents / 100, dst, pos);
+        int fraction = (int) (cents % 100);
+        dst[pos++] = '.';
+        dst[pos++] = (byte) ('0' + fraction / 10);
+        dst[pos++] = (byte) ('0' + fraction % 10);
+        return pos;
+    }
+
+    // Epoch millis -> "2025-07-15T12:34:56.789Z" (UTC, sempre 24 bytes)
+    static int writeIsoInstant(long epochMillis, byte[] dst, int pos) {
+        long epochDay = Math.floorDiv(epochMillis, 86_400_000L);
+        int millisOfDay = (int) Math.floorMod(epochMillis, 86_400_000L);
+
+        // Civil-from-days (Howard Hinnant) - ano/mês/dia sem tabelas nem objetos
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        pos = writeFixed(year, 4, dst, pos);
+        dst[pos++] = '-';
+        pos = writeFixed(month, 2, dst, pos);
+        dst[pos++] = '-';
+        pos = writeFixed(day, 2, dst, pos);
+        dst[pos++] = 'T';
+        pos = writeFixed(millisOfDay / 3_600_000, 2, dst, pos);
+        dst[pos++] = ':';
+        pos = writeFixed(millisOfDay / 60_000 % 60, 2, dst, pos);
+        dst[pos++] = ':';
+        pos = writeFixed(millisOfDay / 1000 % 60, 2, dst, pos);
+        dst[pos++] = '.';
+        pos = writeFixed(millisOfDay % 1000, 3, dst, pos);
+        dst[pos++] = 'Z';
+        return pos;
+    }
+
+    private static int writeFixed(int value, int width, byte[] dst, int pos) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            dst[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+
+    private static int writeLong(long value, byte[] dst, int pos) {
+        if (value == 0) {
+            dst[pos] = '0';
+            return pos + 1;
+        }
+        int start = pos;
+        while (value > 0) {
+            dst[pos++] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        // Inverte os dígitos escritos do menos para o mais significativo
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte tmp = dst[i];
+            dst[i] = dst[j];
+            dst[j] = tmp;
+        }
+        return pos;
+    }
+
+    private static int put(byte[] src, byte[] dst, int pos) {
+        System.arraycopy(src, 0, dst, pos, src.length);
+        return pos + src.length;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -3,32 +3,78 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 
+import src.metrics.Counter;
+import src.metrics.Metrics;
 import src.model.PaymentRequest;
 
+// Cliente assíncrono dos processors: conexões HTTP/1.1 persistentes (pool do HttpClient por host),
+// payload escrito em buffers reaproveitados e corpo da resposta descartado
 public class PaymentService {
     private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofMillis(500))  // ❌ Era 2s
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(500))
+            // Callbacks de conclusão rodam em virtual threads
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
             .build();
 
-    public static boolean sendPaymentToProcessor(PaymentRequest payment, String processorUrl) {
-        try {
-            String jsonPayload = String.format(
-                    "{\"correlationId\":\"%s\",\"amount\":%.2f,\"requestedAt\":\"%s\"}",
-                    payment.correlationId, payment.amount, payment.requestedAt
-            );
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(processorUrl + "/payments"))
-                    .timeout(Duration.ofMillis(200))  // ❌ Era 300ms
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            int statusCode = response.statusCode();
-            return ((statusCode >= 200 && statusCode < 300) || (statusCode >= 400 && statusCode < 500));
-        } catch (Exception e) {
-            return false;
+    private static final Counter timeouts = Metrics.counter("payments_timeouts_total", "Timeouts por estágio",
+            "stage=\"processor\"");
+    private static final Counter sendErrors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"processor_send\"");
+
+    /** Como o processor respondeu a um envio. */
+    public enum Outcome {
+        ACCEPTED, // 2xx
+        DUPLICATE, // 4xx - o processor já conhece o correlationId: entregue, mas a latência não diz nada
+        FAILED; // 5xx, timeout ou erro de rede
+
+        public boolean delivered() {
+            return this != FAILED;
         }
     }
+
+    private static final ConcurrentHashMap<String, URI> paymentUris = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<byte[]> payloadPool = new ConcurrentLinkedQueue<>();
+
+    /** Completa com o Outcome do envio. Nunca falha. */
+    public static CompletableFuture<Outcome> sendPaymentToProcessor(PaymentRequest payment, String processorUrl,
+            long timeoutMs) {
+        byte[] payload = acquirePayloadBuffer();
+        int length = PaymentPayloadEncoder.encode(payment, payload);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(paymentUris.computeIfAbsent(processorUrl, url -> URI.create(url + "/payments")))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload, 0, length))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, throwable) -> {
+                    if (throwable != null) {
+                        // Timeout/cancelamento não para o envio: o publisher ainda pode ler o buffer, que fica
+                        // para o GC em vez de voltar ao pool
+                        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                        (cause instanceof HttpTimeoutException ? timeouts : sendErrors).increment();
+                        return Outcome.FAILED;
+                    }
+                    payloadPool.offer(payload); // Com resposta, o corpo já foi todo escrito
+                    int statusCode = response.statusCode();
+                    if (statusCode >= 200 && statusCode < 300) return Outcome.ACCEPTED;
+                    return statusCode >= 400 && statusCode < 500 ? Outcome.DUPLICATE : Outcome.FAILED;
+                });
+    }
+
+    private static byte[] acquirePayloadBuffer() {
+        byte[] buffer = payloadPool.poll();
+        return buffer != null ? buffer : new byte[PaymentPayloadEncoder.MAX_PAYLOAD];
+    }
 }
@@ -0,0 +1,101 @@
+package src.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import src.model.Amounts;
+import src.model.PaymentProcessorSummary;
+import src.model.PaymentRequest;
+
+// Resumo por janela [from, to] montado a partir de buckets de tempo agregados no Redis
+public class PaymentSummaryEngine {
+    // Granularidade dos buckets - janelas são resolvidas nesse passo
+    public static final long BUCKET_MILLIS = 1000;
+
+    public static final String[] PROCESSORS = { "default", "fallback" };
+
+    // SUMMARY_MODE=peer: cada instância agrega em memória e o resumo soma a parcial do peer (PEER_URL);
+    // a contabilidade sai do Redis. Padrão "redis": buckets compartilhados no Redis.
+    public static final boolean PEER_MODE = "peer"
+            .equalsIgnoreCase(System.getenv().getOrDefault("SUMMARY_MODE", "redis"));
+
+    /** Contabiliza um pagamento aceito pelo processor: journal local + backend do modo atual. */
+    public static void recordProcessed(PaymentRequest payment, String correlationId, String processor) {
+        int index = PROCESSORS[1].equals(processor) ? 1 : 0;
+        PaymentJournal.append(payment.idHigh, payment.idLow, payment.requestedAtMillis, payment.amountCents, index);
+        if (PEER_MODE) {
+            LocalSummaryLedger.add(index, payment.requestedAtMillis, payment.amountCents);
+            // Contabilidade fica local, mas o dedup entre instâncias precisa saber que este já foi pago
+            RedisAsyncManager.markProcessed(correlationId, payment.requestedAtMillis, payment.amountCents, processor);
+        } else {
+            // Redis operations FIRE-AND-FORGET (sem aguardar)
+            RedisAsyncManager.recordPayment(correlationId, payment.requestedAtMillis, payment.amountCents, processor);
+        }
+    }
+
+    /** Zera o agregado local (fim do warm-up). */
+    public static void resetLocal() {
+        LocalSummaryLedger.clear();
+    }
+
+    /** Modo redis: passa a espelhar os totais do Redis para o resumo sem janela. O modo peer não usa. */
+    public static void startSnapshot() {
+        if (!PEER_MODE) SummarySnapshot.start();
+    }
+
+    static PaymentProcessorSummary[] sum(PaymentProcessorSummary[] a, PaymentProcessorSummary[] b) {
+        PaymentProcessorSummary[] result = new PaymentProcessorSummary[a.length];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = new PaymentProcessorSummary(a[i].totalRequests + b[i].totalRequests,
+                    a[i].totalAmountCents + b[i].totalAmountCents);
+        }
+        return result;
+    }
+
+    public static CompletableFuture<PaymentProcessorSummary[]> query(long fromMillis, long toMillis) {
+        long fromBucket = Math.floorDiv(fromMillis, BUCKET_MILLIS);
+        long toBucket = Math.floorDiv(toMillis, BUCKET_MILLIS);
+
+        // Todos os HGETALL saem juntos - um round trip efetivo
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Map<String, String>>[] futures = new CompletableFuture[PROCESSORS.length * 2];
+        for (int i = 0; i < PROCESSORS.length; i++) {
+            futures[i * 2] = RedisAsyncManager.getCountBuckets(PROCESSORS[i]);
+            futures[i * 2 + 1] = RedisAsyncManager.getCentsBuckets(PROCESSORS[i]);
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            PaymentProcessorSummary[] result = new PaymentProcessorSummary[PROCESSORS.length];
+            for (int i = 0; i < PROCESSORS.length; i++) {
+                result[i] = merge(futures[i * 2].join(), futures[i * 2 + 1].join(), fromBucket, toBucket);
+            }
+            return result;
+        });
+    }
+
+    private static PaymentProcessorSummary merge(Map<String, String> counts, Map<String, String> cents,
+            long fromBucket, long toBucket) {
+        long totalRequests = sumInWindow(counts, fromBucket, toBucket);
+        long totalCents = sumInWindow(cents, fromBucket, toBucket);
+        return new PaymentProcessorSummary(totalRequests, totalCents);
+    }
+
+    private static long sumInWindow(Map<String, String> buckets, long fromBucket, long toBucket) {
+        long total = 0;
+        for (Map.Entry<String, String> e : buckets.entrySet()) {
+            long bucket = Long.parseLong(e.getKey());
+            if (bucket >= fromBucket && bucket <= toBucket) {
+                total += Long.parseLong(e.getValue());
+            }
+        }
+        return total;
+    }
+
+    public static String toJson(PaymentProcessorSummary[] summaries) {
+        // String concatenation DIRETA (mais rápida que StringBuilder para strings pequenas)
+        return "{\"default\":{\"totalRequests\":" + summaries[0].totalRequests +
+                ",\"totalAmount\":" + Amounts.toDecimalString(summaries[0].totalAmountCents) +
+                "},\"fallback\":{\"totalRequests\":" + summaries[1].totalRequests +
+                ",\"totalAmount\":" + Amounts.toDecimalString(summaries[1].totalAmountCents) + "}}";
+    }
+}
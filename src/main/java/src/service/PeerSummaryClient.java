@@ -0,0 +1,79 @@
+package src.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import src.model.Amounts;
+import src.model.PaymentProcessorSummary;
+
+// Busca o resumo parcial da outra instância (app <-> app2) no endpoint interno
+final class PeerSummaryClient {
+    static final String PEER_URL = System.getenv("PEER_URL");
+    private static final long TIMEOUT_MS = Long
+            .parseLong(System.getenv().getOrDefault("PEER_SUMMARY_TIMEOUT_MS", "300"));
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(TIMEOUT_MS))
+            .build();
+
+    private PeerSummaryClient() {
+    }
+
+    /** Completa com erro se o peer não responder 200 dentro de PEER_SUMMARY_TIMEOUT_MS. */
+    static CompletableFuture<PaymentProcessorSummary[]> fetch(long fromMillis, long toMillis) {
+        if (PEER_URL == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("PEER_URL not set"));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(PEER_URL + PaymentApiServer.PARTIAL_SUMMARY_PATH + "?from=" + fromMillis
+                        + "&to=" + toMillis))
+                .timeout(Duration.ofMillis(TIMEOUT_MS))
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("peer answered " + response.statusCode());
+                    }
+                    return parse(response.body());
+                });
+    }
+
+    // Lê o JSON de PaymentSummaryEngine.toJson: default e fallback, nessa ordem
+    static PaymentProcessorSummary[] parse(byte[] json) {
+        String text = new String(json, StandardCharsets.US_ASCII);
+        PaymentProcessorSummary[] result = new PaymentProcessorSummary[PaymentSummaryEngine.PROCESSORS.length];
+        int from = 0;
+        for (int i = 0; i < result.length; i++) {
+            int requests = valueStart(text, "\"totalRequests\":", from);
+            int requestsEnd = valueEnd(text, requests);
+            int amount = valueStart(text, "\"totalAmount\":", requestsEnd);
+            int amountEnd = valueEnd(text, amount);
+            long cents = Amounts.parseCents(json, amount, amountEnd);
+            if (cents == Amounts.INVALID) throw new IllegalArgumentException("bad peer amount");
+            result[i] = new PaymentProcessorSummary(Long.parseLong(text, requests, requestsEnd, 10), cents);
+            from = amountEnd;
+        }
+        return result;
+    }
+
+    private static int valueStart(String text, String field, int from) {
+        int index = text.indexOf(field, from);
+        if (index == -1) throw new IllegalArgumentException("missing " + field);
+        return index + field.length();
+    }
+
+    private static int valueEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && text.charAt(end) != ',' && text.charAt(end) != '}') {
+            end++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,46 @@
+package src.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Conjunto aproximado e lock-free dos fingerprints vistos recentemente.
+ * Endereçamento aberto com janela de probe curta; quando a janela enche, o
+ * slot de origem é sobrescrito (esquece o mais antigo daquela região).
+ */
+final class RecentlySeenFilter {
+    private static final int PROBE_WINDOW = 8;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    RecentlySeenFilter(int capacityPowerOfTwo) {
+        this.slots = new AtomicLongArray(capacityPowerOfTwo);
+        this.mask = capacityPowerOfTwo - 1;
+    }
+
+    /** true se o fingerprint é novo (e passa a ser lembrado), false se já foi visto. */
+    boolean markSeen(long fingerprint) {
+        long fp = fingerprint == 0 ? 1 : fingerprint; // 0 = slot vazio
+        int home = (int) (fp ^ (fp >>> 32)) & mask;
+
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            int slot = (home + i) & mask;
+            long current = slots.get(slot);
+            if (current == fp) return false;
+            if (current == 0) {
+                if (slots.compareAndSet(slot, 0, fp)) return true;
+                // Perdeu a corrida: pode ter sido o mesmo fingerprint
+                if (slots.get(slot) == fp) return false;
+            }
+        }
+
+        slots.set(home, fp);
+        return true;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0);
+        }
+    }
+}
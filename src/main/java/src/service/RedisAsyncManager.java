@@ -1,18 +1,36 @@
 package src.service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.resource.ClientResources;
 import io.lettuce.core.resource.DefaultClientResources;
 
+import src.metrics.Counter;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+import src.model.ProcessorHealth;
+
 public class RedisAsyncManager {
-    private static final String REDIS_URI = System.getenv().getOrDefault("REDIS_URI", "redis://localhost:6379");
+    // -Dredis.uri tem precedência (benchmarks apontam para um stand-in em memória)
+    private static final String REDIS_URI = System.getProperty("redis.uri",
+            System.getenv().getOrDefault("REDIS_URI", "redis://localhost:6379"));
     
     // ✅ OTIMIZAÇÃO 1: ClientResources otimizado para baixa latência
     private static final ClientResources clientResources = DefaultClientResources.builder()
@@ -35,38 +53,374 @@ public class RedisAsyncManager {
     private static final StatefulRedisConnection<String, String> connection = redisClient.connect();
     private static final RedisAsyncCommands<String, String> async = connection.async();
 
+    // Conexão própria para quem faz comando bloqueante (XREADGROUP BLOCK) - não trava a compartilhada
+    static StatefulRedisConnection<String, String> connect() {
+        return redisClient.connect();
+    }
+
+    // Conexão em modo SUBSCRIBE não aceita outros comandos - sempre separada
+    static StatefulRedisPubSubConnection<String, String> connectPubSub() {
+        return redisClient.connectPubSub();
+    }
+
     // ✅ OTIMIZAÇÃO 3: Timeout agressivo em todas as operações
     private static final int REDIS_TIMEOUT_MS = 50;
 
-    public static CompletableFuture<Boolean> createRedisRequest(String requestedAt, String correlationId, String amount) {
-        // ✅ Concatenação direta - mais rápida que StringBuilder para strings pequenas
-        String value = "{\"requestedAt\":\"" + requestedAt + "\",\"amount\":\"" + amount + "\"}";
-        return async.setnx(correlationId, value)
-                   .toCompletableFuture()
-                   .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                   .exceptionally(throwable -> false); // Falha rápida
+    // Identifica esta instância nos claims (app / app2)
+    static final String INSTANCE_ID = System.getenv().getOrDefault("HOSTNAME",
+            Long.toHexString(System.nanoTime()));
+    private static final long CLAIM_LEASE_MS = Long
+            .parseLong(System.getenv().getOrDefault("CLAIM_LEASE_MS", "5000"));
+
+    // Ledger compacto: hashes pequenos "ledger:<prefixo do id>" (ficam em listpack), campo = resto do id
+    // em binário, valor = struct (millis 6 bytes, centavos 5 bytes - ver Amounts.MAX_CENTS, processor 1 byte).
+    // Só o ledger tem TTL - com volatile-lru o Redis despeja ledger antigo e nunca os agregados de summary.
+    private static final int LEDGER_SHARD_HEX = Integer
+            .parseInt(System.getenv().getOrDefault("LEDGER_SHARD_HEX", "3"));
+    private static final long LEDGER_TTL_MS = Long
+            .parseLong(System.getenv().getOrDefault("LEDGER_TTL_MS", "86400000"));
+
+    // Hex -> bytes dentro do script (o codec da conexão é String/UTF-8, binário não passa pelo Java)
+    private static final String LEDGER_FIELD_FN =
+            "local function field(hex) " +
+            "  if #hex % 2 == 1 then hex = '0' .. hex end " +
+            "  return (hex:gsub('%x%x', function(h) return string.char(tonumber(h, 16)) end)) " +
+            "end ";
+
+    // Cada lote que soma algo aos buckets publica o que somou, com versão sequencial (ver SummarySnapshot).
+    // Chaves fixas fora de KEYS - só vale para Redis standalone, que é o que roda aqui.
+    static final String SUMMARY_CHANNEL = "summary:deltas";
+    private static final String SUMMARY_VERSION_KEY = "summary:version";
+
+    // KEYS em trincas (ledger, count, cents), ARGV em quíntuplas (campo, bucket, cents, millis, processor)
+    // seguidas do TTL do ledger. HINCRBYs repetidos do mesmo bucket são somados antes de tocar o Redis.
+    private static final String RECORD_BATCH_SCRIPT =
+            LEDGER_FIELD_FN +
+            "local ttl = ARGV[#ARGV] " +
+            "local touched = {} " +
+            "local created = {} " +
+            "local agg = {} " +
+            "local dcount = {0, 0} " +
+            "local dcents = {0, 0} " +
+            "local function add(key, field, delta) " +
+            "  local h = agg[key] " +
+            "  if not h then h = {} agg[key] = h end " +
+            "  h[field] = (h[field] or 0) + delta " +
+            "end " +
+            "for i = 1, #KEYS / 3 do " +
+            "  local k = (i - 1) * 3 " +
+            "  local a = (i - 1) * 5 " +
+            "  local value = struct.pack('>I6I5B', tonumber(ARGV[a + 4]), tonumber(ARGV[a + 3]), " +
+            "      tonumber(ARGV[a + 5])) " +
+            "  if redis.call('HSETNX', KEYS[k + 1], field(ARGV[a + 1]), value) == 1 then " +
+            "    created[i] = 1 " +
+            "    touched[KEYS[k + 1]] = true " +
+            "    add(KEYS[k + 2], ARGV[a + 2], 1) " +
+            "    add(KEYS[k + 3], ARGV[a + 2], tonumber(ARGV[a + 3])) " +
+            "    local p = tonumber(ARGV[a + 5]) + 1 " +
+            "    dcount[p] = dcount[p] + 1 " +
+            "    dcents[p] = dcents[p] + tonumber(ARGV[a + 3]) " +
+            "  else created[i] = 0 end " +
+            "end " +
+            "for key, h in pairs(agg) do " +
+            "  for f, delta in pairs(h) do redis.call('HINCRBY', key, f, delta) end " +
+            "end " +
+            "for key in pairs(touched) do redis.call('PEXPIRE', key, ttl) end " +
+            "if next(touched) then " +
+            "  local v = redis.call('INCR', '" + SUMMARY_VERSION_KEY + "') " +
+            "  redis.call('PUBLISH', '" + SUMMARY_CHANNEL + "', v .. ' ' .. dcount[1] .. ' ' .. " +
+            "      string.format('%.0f', dcents[1]) .. ' ' .. dcount[2] .. ' ' .. string.format('%.0f', dcents[2])) " +
+            "end " +
+            "return created";
+
+    // Versão + soma de todos os buckets por processor no mesmo instante - a base do SummarySnapshot
+    private static final String SUMMARY_TOTALS_SCRIPT =
+            "local out = { redis.call('GET', KEYS[1]) or '0' } " +
+            "for i = 2, #KEYS do " +
+            "  local total = 0 " +
+            "  for _, v in ipairs(redis.call('HVALS', KEYS[i])) do total = total + tonumber(v) end " +
+            "  out[i] = string.format('%.0f', total) " +
+            "end " +
+            "return out";
+    private static final String SUMMARY_TOTALS_SHA = sha1Hex(SUMMARY_TOTALS_SCRIPT);
+
+    // SUMMARY_MODE=peer: só o campo do ledger, sem agregados - o claim continua enxergando o que já foi
+    // pago mesmo depois que o lease expira. KEYS = ledger por item, ARGV em quádruplas (campo, cents,
+    // millis, processor) seguidas do TTL.
+    private static final String MARK_BATCH_SCRIPT =
+            LEDGER_FIELD_FN +
+            "local ttl = ARGV[#ARGV] " +
+            "local touched = {} " +
+            "local created = {} " +
+            "for i = 1, #KEYS do " +
+            "  local a = (i - 1) * 4 " +
+            "  local value = struct.pack('>I6I5B', tonumber(ARGV[a + 3]), tonumber(ARGV[a + 2]), " +
+            "      tonumber(ARGV[a + 4])) " +
+            "  created[i] = redis.call('HSETNX', KEYS[i], field(ARGV[a + 1]), value) " +
+            "  touched[KEYS[i]] = true " +
+            "end " +
+            "for key in pairs(touched) do redis.call('PEXPIRE', key, ttl) end " +
+            "return created";
+
+    // KEYS em pares (ledger, claim), ARGV = campo por item seguido de (token, leaseMs). Já registrado -> 0;
+    // claim livre ou já nosso (retry local) -> 1; claim de outra instância -> 0.
+    private static final String CLAIM_BATCH_SCRIPT =
+            LEDGER_FIELD_FN +
+            "local out = {} " +
+            "local token = ARGV[#ARGV - 1] " +
+            "local lease = ARGV[#ARGV] " +
+            "for i = 1, #KEYS / 2 do " +
+            "  local k = (i - 1) * 2 " +
+            "  if redis.call('HEXISTS', KEYS[k + 1], field(ARGV[i])) == 1 then out[i] = 0 " +
+            "  elseif redis.call('SET', KEYS[k + 2], token, 'NX', 'PX', lease) then out[i] = 1 " +
+            "  elseif redis.call('GET', KEYS[k + 2]) == token then out[i] = 1 " +
+            "  else out[i] = 0 end " +
+            "end " +
+            "return out";
+
+    // Um EVALSHA por lote em vez de um comando por pagamento
+    private static final RedisBatchWriter recordWriter = new RedisBatchWriter("record", RECORD_BATCH_SCRIPT, 3, 5,
+            Long.toString(LEDGER_TTL_MS));
+    private static final RedisBatchWriter markWriter = new RedisBatchWriter("mark", MARK_BATCH_SCRIPT, 1, 4,
+            Long.toString(LEDGER_TTL_MS));
+    private static final RedisBatchWriter claimWriter = new RedisBatchWriter("claim", CLAIM_BATCH_SCRIPT, 2, 1,
+            INSTANCE_ID, Long.toString(CLAIM_LEASE_MS));
+
+    private static final Counter timeouts = Metrics.counter("payments_timeouts_total", "Timeouts por estágio",
+            "stage=\"redis\"");
+    private static final Counter errors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"redis\"");
+    private static final Counter recordFailures = Metrics.counter("payments_record_failures_total",
+            "Pagamentos aceitos pelo processor que não chegaram ao ledger", "");
+    private static final LatencyHistogram leaseLatency = commandHistogram("lease");
+    private static final LatencyHistogram healthSetLatency = commandHistogram("health_set");
+    private static final LatencyHistogram healthGetLatency = commandHistogram("health_get");
+    private static final LatencyHistogram hgetallLatency = commandHistogram("hgetall");
+    private static final LatencyHistogram summaryTotalsLatency = commandHistogram("summary_totals");
+
+    // Registro é idempotente (HSETNX no ledger) - dá pra repetir com segurança após timeout
+    private static final int RECORD_ATTEMPTS = 3;
+
+    // Ledger + buckets de tempo no mesmo passo: só agrega se o pagamento for novo.
+    public static CompletableFuture<Boolean> recordPayment(String correlationId, long requestedAtMillis,
+            long amountCents, String processor) {
+        String[] keys = { ledgerKey(correlationId), countBucketsKey(processor), centsBucketsKey(processor) };
+        String[] args = { ledgerField(correlationId), Long.toString(requestedAtMillis / PaymentSummaryEngine.BUCKET_MILLIS),
+                Long.toString(amountCents), Long.toString(requestedAtMillis), processorCode(processor) };
+        return submitRecord(recordWriter, keys, args, RECORD_ATTEMPTS);
     }
-    
-    public static CompletableFuture<Long> incrementTotalRequests() {
-        return async.incr("summary:default:totalRequests")
-                    .toCompletableFuture()
-                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                    .exceptionally(throwable -> 0L);
+
+    /**
+     * Só marca o pagamento como feito no ledger, sem tocar os buckets (SUMMARY_MODE=peer, onde a
+     * contabilidade é local). É o que faz o claim de outra instância recusar o mesmo correlationId
+     * depois que o lease expirou.
+     */
+    public static CompletableFuture<Boolean> markProcessed(String correlationId, long requestedAtMillis,
+            long amountCents, String processor) {
+        String[] keys = { ledgerKey(correlationId) };
+        String[] args = { ledgerField(correlationId), Long.toString(amountCents), Long.toString(requestedAtMillis),
+                processorCode(processor) };
+        return submitRecord(markWriter, keys, args, RECORD_ATTEMPTS);
     }
 
-    public static CompletableFuture<Long> getTotalRequests() {
-        return async.get("summary:default:totalRequests")
+    private static CompletableFuture<Boolean> submitRecord(RedisBatchWriter writer, String[] keys, String[] args,
+            int attemptsLeft) {
+        return writer.submit(keys, args)
+                .exceptionallyCompose(throwable -> attemptsLeft > 1
+                        ? submitRecord(writer, keys, args, attemptsLeft - 1)
+                        : recordFailed()); // Falha rápida
+    }
+
+    private static CompletableFuture<Boolean> recordFailed() {
+        recordFailures.increment();
+        return CompletableFuture.completedFuture(false);
+    }
+
+    static LatencyHistogram commandHistogram(String command) {
+        return Metrics.histogram("redis_command_seconds", "Round trip por comando/script no Redis",
+                "command=\"" + command + "\"");
+    }
+
+    // Mede o round trip e conta timeout/erro sem mudar o resultado
+    static <T> CompletableFuture<T> timed(LatencyHistogram histogram, long startNanos, CompletableFuture<T> future) {
+        return future.whenComplete((result, throwable) -> {
+            histogram.recordSince(startNanos);
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                (cause instanceof TimeoutException ? timeouts : errors).increment();
+            }
+        });
+    }
+
+    /**
+     * Claim atômico antes do envio (SET NX PX com lease curto), válido entre
+     * app e app2. Completa com false se o pagamento já foi registrado ou está
+     * com outra instância; completa com erro se o Redis não respondeu a tempo.
+     */
+    public static CompletableFuture<Boolean> claimPayment(String correlationId) {
+        return claimWriter.submit(new String[] { ledgerKey(correlationId), "claim:" + correlationId },
+                new String[] { ledgerField(correlationId) });
+    }
+
+    // Os primeiros LEDGER_SHARD_HEX dígitos do id escolhem o hash (antes do primeiro '-')
+    private static String ledgerKey(String correlationId) {
+        return "ledger:" + correlationId.substring(0, LEDGER_SHARD_HEX);
+    }
+
+    // Resto do id só com os dígitos - o script converte para binário
+    private static String ledgerField(String correlationId) {
+        StringBuilder hex = new StringBuilder(32 - LEDGER_SHARD_HEX);
+        for (int i = LEDGER_SHARD_HEX; i < correlationId.length(); i++) {
+            char c = correlationId.charAt(i);
+            if (c != '-') hex.append(c);
+        }
+        return hex.toString();
+    }
+
+    private static String processorCode(String processor) {
+        return "default".equals(processor) ? "0" : "1";
+    }
+
+    // EVALSHA com fallback para EVAL quando o script ainda não está no cache do Redis
+    static <T> CompletableFuture<T> evalScript(String sha, String script, ScriptOutputType type, String[] keys,
+            String... args) {
+        return async.<T>evalsha(sha, type, keys, args)
                     .toCompletableFuture()
-                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                    .thenApply(val -> {
-                        if (val == null || val.isEmpty()) return 0L;
-                        try {
-                            return Long.parseLong(val);
-                        } catch (NumberFormatException e) {
-                            return 0L;
+                    .exceptionallyCompose(throwable -> {
+                        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                        if (cause instanceof RedisNoScriptException) {
+                            return async.<T>eval(script, type, keys, args).toCompletableFuture();
                         }
+                        return CompletableFuture.failedFuture(cause);
                     })
-                    .exceptionally(throwable -> 0L);
+                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static String sha1Hex(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Lease de quem consulta o service-health: pega se livre, renova se já é nosso
+    private static final String LEASE_SCRIPT =
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "return 0";
+    private static final String LEASE_SHA = sha1Hex(LEASE_SCRIPT);
+
+    /** true se esta instância é (ou continua sendo) a dona do lease. */
+    public static CompletableFuture<Boolean> tryAcquireLease(String key, long ttlMs) {
+        long start = System.nanoTime();
+        return timed(leaseLatency, start, RedisAsyncManager.<Long>evalScript(LEASE_SHA, LEASE_SCRIPT,
+                        ScriptOutputType.INTEGER, new String[] { key }, INSTANCE_ID, Long.toString(ttlMs)))
+                   .thenApply(acquired -> acquired != null && acquired == 1L);
+    }
+
+    public static CompletableFuture<Void> publishHealth(String processor, ProcessorHealth health) {
+        long start = System.nanoTime();
+        return timed(healthSetLatency, start, async.set(healthKey(processor), health.encode())
+                    .toCompletableFuture()
+                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    .thenApply(ok -> null);
+    }
+
+    /** Visão compartilhada de health, na ordem dos processors pedidos (null se ausente). */
+    public static CompletableFuture<ProcessorHealth[]> getHealth(String... processors) {
+        String[] keys = new String[processors.length];
+        for (int i = 0; i < processors.length; i++) {
+            keys[i] = healthKey(processors[i]);
+        }
+        long start = System.nanoTime();
+        return timed(healthGetLatency, start, async.mget(keys)
+                    .toCompletableFuture()
+                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    .thenApply(values -> {
+                        ProcessorHealth[] result = new ProcessorHealth[processors.length];
+                        for (int i = 0; i < values.size() && i < result.length; i++) {
+                            KeyValue<String, String> kv = values.get(i);
+                            result[i] = kv.hasValue() ? ProcessorHealth.decode(kv.getValue()) : null;
+                        }
+                        return result;
+                    });
+    }
+
+    private static String healthKey(String processor) {
+        return "health:" + processor;
+    }
+
+    // Buckets por processor: campo = índice do bucket, valor = contagem / centavos
+    public static CompletableFuture<Map<String, String>> getCountBuckets(String processor) {
+        return hgetall(countBucketsKey(processor));
+    }
+
+    public static CompletableFuture<Map<String, String>> getCentsBuckets(String processor) {
+        return hgetall(centsBucketsKey(processor));
+    }
+
+    private static CompletableFuture<Map<String, String>> hgetall(String key) {
+        long start = System.nanoTime();
+        return timed(hgetallLatency, start, async.hgetall(key)
+                    .toCompletableFuture()
+                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /** [versão, count0, cents0, count1, cents1]: totais de todos os buckets e a versão do último delta. */
+    static CompletableFuture<long[]> summaryTotals() {
+        String[] processors = PaymentSummaryEngine.PROCESSORS;
+        String[] keys = new String[1 + processors.length * 2];
+        keys[0] = SUMMARY_VERSION_KEY;
+        for (int i = 0; i < processors.length; i++) {
+            keys[1 + i * 2] = countBucketsKey(processors[i]);
+            keys[2 + i * 2] = centsBucketsKey(processors[i]);
+        }
+        long start = System.nanoTime();
+        return timed(summaryTotalsLatency, start, RedisAsyncManager.<List<Object>>evalScript(SUMMARY_TOTALS_SHA,
+                        SUMMARY_TOTALS_SCRIPT, ScriptOutputType.MULTI, keys))
+                   .thenApply(values -> {
+                       long[] totals = new long[values.size()];
+                       for (int i = 0; i < totals.length; i++) {
+                           totals[i] = Long.parseLong(String.valueOf(values.get(i)));
+                       }
+                       return totals;
+                   });
+    }
+
+    // Execução dona dos dados do Redis ("<run>:<época>"), sem TTL como os buckets: volatile-lru nunca a despeja,
+    // então ela só some junto com os buckets, quando o Redis perde tudo
+    private static final String RUN_KEY = "journal:run";
+    private static final String RUN_SCRIPT =
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX') then return ARGV[1] end " +
+            "return redis.call('GET', KEYS[1])";
+    private static final String RUN_SHA = sha1Hex(RUN_SCRIPT);
+
+    /** Marca da execução atual; null se o Redis não tem nenhuma (novo ou perdeu os dados). */
+    static CompletableFuture<String> currentRun() {
+        return async.get(RUN_KEY)
+                    .toCompletableFuture()
+                    .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Grava run se não houver marca; devolve a que vale (a de quem chegou primeiro). */
+    static CompletableFuture<String> claimRun(String run) {
+        return RedisAsyncManager.<String>evalScript(RUN_SHA, RUN_SCRIPT, ScriptOutputType.VALUE,
+                new String[] { RUN_KEY }, run);
+    }
+
+    private static String countBucketsKey(String processor) {
+        return "summary:" + processor + ":count";
+    }
+
+    private static String centsBucketsKey(String processor) {
+        return "summary:" + processor + ":cents";
     }
 
     public static CompletableFuture<BigDecimal> incrementTotalAmount(BigDecimal amount) {
@@ -92,15 +446,6 @@ public class RedisAsyncManager {
                     .exceptionally(throwable -> BigDecimal.ZERO);
     }   
 
-    // ✅ OTIMIZAÇÃO 4: existsAsync ultra-rápido usando GET
-    public static CompletableFuture<Boolean> existsAsync(String key) {
-        return async.get(key)
-                   .toCompletableFuture()
-                   .orTimeout(REDIS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                   .thenApply(val -> val != null)
-                   .exceptionally(throwable -> false);
-    }
-
     // ✅ OTIMIZAÇÃO 5: Método de inicialização para verificar conectividade
     public static boolean initialize() {
         try {
@@ -0,0 +1,131 @@
+package src.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import io.lettuce.core.ScriptOutputType;
+import src.metrics.Counter;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+
+/**
+ * Junta comandos de todos os workers e manda tudo num único EVALSHA. Flush por
+ * tamanho (REDIS_BATCH_MAX) ou por prazo em microssegundos desde o primeiro
+ * item pendente; o resultado de cada item volta pelo próprio future.
+ *
+ * O script recebe KEYS em grupos de keysPerItem, ARGV em grupos de argsPerItem
+ * seguidos dos sharedArgs, e devolve um array com 1/0 por item.
+ */
+final class RedisBatchWriter {
+    private static final int MAX_BATCH = Integer
+            .parseInt(System.getenv().getOrDefault("REDIS_BATCH_MAX", "128"));
+    private static final long FLUSH_DELAY_NANOS = TimeUnit.MICROSECONDS
+            .toNanos(Long.parseLong(System.getenv().getOrDefault("REDIS_BATCH_DELAY_MICROS", "500")));
+
+    private static final Counter flushErrors = Metrics.counter("payments_errors_total",
+            "Exceções engolidas por estágio", "stage=\"redis_batch\"");
+
+    private final String script;
+    private final String sha;
+    private final int keysPerItem;
+    private final int argsPerItem;
+    private final String[] sharedArgs;
+
+    private final ConcurrentLinkedQueue<PendingItem> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread flusher;
+    private final LatencyHistogram latency;
+
+    private static final class PendingItem {
+        final String[] keys;
+        final String[] args;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingItem(String[] keys, String[] args) {
+            this.keys = keys;
+            this.args = args;
+        }
+    }
+
+    RedisBatchWriter(String name, String script, int keysPerItem, int argsPerItem, String... sharedArgs) {
+        this.script = script;
+        this.sha = RedisAsyncManager.sha1Hex(script);
+        this.keysPerItem = keysPerItem;
+        this.argsPerItem = argsPerItem;
+        this.sharedArgs = sharedArgs;
+        this.latency = RedisAsyncManager.commandHistogram(name);
+        this.flusher = new Thread(this::flushLoop, "redis-batch-" + name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    CompletableFuture<Boolean> submit(String[] keys, String[] args) {
+        PendingItem item = new PendingItem(keys, args);
+        pending.add(item);
+        int count = pendingCount.incrementAndGet();
+        // Acorda o flusher no primeiro item (arma o prazo) e quando o lote enche
+        if (count == 1 || count >= MAX_BATCH) {
+            LockSupport.unpark(flusher);
+        }
+        return item.result;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            try {
+                if (pendingCount.get() == 0) {
+                    LockSupport.park();
+                    continue;
+                }
+
+                long deadline = System.nanoTime() + FLUSH_DELAY_NANOS;
+                long remaining;
+                while (pendingCount.get() < MAX_BATCH && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+
+                flush();
+            } catch (Exception e) {
+                flushErrors.increment(); // Flusher nunca pode morrer
+            }
+        }
+    }
+
+    private void flush() {
+        PendingItem[] batch = new PendingItem[MAX_BATCH];
+        int size = 0;
+        PendingItem item;
+        while (size < MAX_BATCH && (item = pending.poll()) != null) {
+            batch[size++] = item;
+        }
+        if (size == 0) return;
+        pendingCount.addAndGet(-size);
+
+        String[] keys = new String[size * keysPerItem];
+        String[] args = new String[size * argsPerItem + sharedArgs.length];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(batch[i].keys, 0, keys, i * keysPerItem, keysPerItem);
+            System.arraycopy(batch[i].args, 0, args, i * argsPerItem, argsPerItem);
+        }
+        System.arraycopy(sharedArgs, 0, args, size * argsPerItem, sharedArgs.length);
+
+        int batchSize = size;
+        long start = System.nanoTime();
+        RedisAsyncManager.timed(latency, start,
+                RedisAsyncManager.<List<Object>>evalScript(sha, script, ScriptOutputType.MULTI, keys, args))
+                .whenComplete((results, throwable) -> {
+                    for (int i = 0; i < batchSize; i++) {
+                        if (throwable != null || results == null || i >= results.size()) {
+                            batch[i].result.completeExceptionally(
+                                    throwable != null ? throwable : new IllegalStateException("short batch reply"));
+                        } else {
+                            batch[i].result.complete(Long.valueOf(1L).equals(results.get(i)));
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,212 @@
+package src.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.XReadArgs.StreamOffset;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.models.stream.ClaimedMessages;
+
+import src.metrics.Counter;
+import src.metrics.Metrics;
+import src.model.PaymentRequest;
+
+/**
+ * Transbordo compartilhado entre app e app2: a instância saturada publica o
+ * excesso num Redis Stream e qualquer instância com folga consome via
+ * consumer group (XREADGROUP em lotes, XACK + XDEL depois de entregar).
+ * Entradas pendentes de uma instância que morreu voltam com XAUTOCLAIM.
+ *
+ * Só vale transbordar se alguém tem folga: quem consome se anuncia num ZSET
+ * (membro = instância, score = validade) enquanto a fila dele está curta, e
+ * peerHasRoom() diz se há outra instância anunciada. O stream não tem TTL
+ * (volatile-lru não o despeja), então o XADD corta com MAXLEN ~.
+ */
+public final class RedisOverflowStream {
+    public static final boolean ENABLED = Boolean
+            .parseBoolean(System.getenv().getOrDefault("OVERFLOW_ENABLED", "true"));
+
+    private static final String STREAM_KEY = "payments:overflow";
+    private static final String GROUP = "workers";
+    private static final int BATCH = Integer.parseInt(System.getenv().getOrDefault("OVERFLOW_BATCH", "64"));
+    private static final long BLOCK_MS = 100;
+    private static final long IDLE_SLEEP_MS = 5;
+    private static final long ERROR_BACKOFF_MS = 200;
+    // Timeout falso-positivo vira duplicata (o claim resolve); curto demais só gera trabalho dobrado
+    private static final long PUBLISH_TIMEOUT_MS = Long
+            .parseLong(System.getenv().getOrDefault("OVERFLOW_PUBLISH_TIMEOUT_MS", "250"));
+    // Pendente há mais que isso sem ACK = consumidor morreu (ou travou) com a entrada na mão
+    private static final long CLAIM_IDLE_MS = Long
+            .parseLong(System.getenv().getOrDefault("OVERFLOW_CLAIM_IDLE_MS", "5000"));
+    private static final long CLAIM_INTERVAL_MS = 1000;
+    // Teto do stream; o corte aproximado descarta as entradas mais antigas, então ele fica bem acima do que o
+    // transbordo com peer folgado chega a acumular
+    private static final long MAX_LEN = Long.parseLong(System.getenv().getOrDefault("OVERFLOW_MAX_LEN", "10000"));
+
+    private static final String ROOM_KEY = "payments:overflow:room";
+    private static final long ROOM_INTERVAL_MS = 100;
+    // Cobre um XREADGROUP bloqueado entre dois anúncios
+    private static final long ROOM_TTL_MS = 500;
+    // ARGV: agora, validade, 1/0 (tem folga), instância, TTL da chave - devolve quantas outras têm folga
+    private static final String ROOM_SCRIPT =
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) " +
+            "if ARGV[3] == '1' then redis.call('ZADD', KEYS[1], ARGV[2], ARGV[4]) " +
+            "else redis.call('ZREM', KEYS[1], ARGV[4]) end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "local others = redis.call('ZCARD', KEYS[1]) " +
+            "if redis.call('ZSCORE', KEYS[1], ARGV[4]) then others = others - 1 end " +
+            "return others";
+
+    private static final Counter published = Metrics.counter("payments_overflow_published_total",
+            "Pagamentos publicados no stream de transbordo", "");
+    private static final Counter consumed = Metrics.counter("payments_overflow_consumed_total",
+            "Pagamentos puxados do stream de transbordo", "");
+    private static final Counter reclaimed = Metrics.counter("payments_overflow_reclaimed_total",
+            "Entradas pendentes de outro consumidor retomadas com XAUTOCLAIM", "");
+    private static final Counter errors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"overflow\"");
+
+    private static final io.lettuce.core.Consumer<String> CONSUMER = io.lettuce.core.Consumer.from(GROUP,
+            RedisAsyncManager.INSTANCE_ID);
+
+    // Conexão própria para o XADD, aberta junto com o consumidor (o primeiro transbordo não paga o connect)
+    private static volatile RedisAsyncCommands<String, String> publisher;
+    // Até quando vale o último "outra instância tem folga" lido no ZSET (0 = ninguém)
+    private static volatile long peerRoomUntil;
+
+    private RedisOverflowStream() {
+    }
+
+    /** true se outra instância anunciou folga há pouco - senão transbordar só enche o stream. */
+    public static boolean peerHasRoom() {
+        return System.currentTimeMillis() < peerRoomUntil;
+    }
+
+    /** XADD assíncrono; completa com erro se o Redis não aceitou a tempo. Só depois de startConsumer. */
+    public static CompletableFuture<Void> publish(PaymentRequest payment) {
+        return publisher.xadd(STREAM_KEY, XAddArgs.Builder.maxlen(MAX_LEN).approximateTrimming(),
+                        "h", Long.toString(payment.idHigh),
+                        "l", Long.toString(payment.idLow),
+                        "c", Long.toString(payment.amountCents),
+                        "t", Long.toString(payment.requestedAtMillis))
+                .toCompletableFuture()
+                .orTimeout(PUBLISH_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .thenAccept(id -> published.increment());
+    }
+
+    /**
+     * Puxa do stream só enquanto hasRoom diz que a fila local tem folga. O
+     * sink sempre fica com o pagamento (se a fila encheu no meio, ele segura
+     * no scheduler) - a entrada é confirmada logo depois da entrega.
+     */
+    public static void startConsumer(BooleanSupplier hasRoom, Consumer<PaymentRequest> sink) {
+        publisher = RedisAsyncManager.connect().async();
+        Thread consumer = new Thread(() -> consumeLoop(hasRoom, sink), "overflow-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    private static void consumeLoop(BooleanSupplier hasRoom, Consumer<PaymentRequest> sink) {
+        RedisCommands<String, String> redis = RedisAsyncManager.connect().sync();
+        boolean groupReady = false;
+        String claimCursor = "0-0";
+        long nextClaimAt = 0;
+        long nextRoomAt = 0;
+
+        while (true) {
+            try {
+                if (!groupReady) {
+                    createGroup(redis);
+                    groupReady = true;
+                }
+                boolean room = hasRoom.getAsBoolean();
+                long now = System.currentTimeMillis();
+                if (now >= nextRoomAt) {
+                    announceRoom(redis, room, now);
+                    nextRoomAt = now + ROOM_INTERVAL_MS;
+                }
+                if (!room) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_SLEEP_MS));
+                    continue;
+                }
+
+                List<StreamMessage<String, String>> messages;
+                if (now >= nextClaimAt) {
+                    ClaimedMessages<String, String> claimed = redis.xautoclaim(STREAM_KEY, XAutoClaimArgs.Builder
+                            .xautoclaim(CONSUMER, Duration.ofMillis(CLAIM_IDLE_MS), claimCursor).count(BATCH));
+                    messages = claimed.getMessages();
+                    reclaimed.add(messages.size());
+                    claimCursor = claimed.getId();
+                    // Cursor voltou ao início: varreu todo o PEL, só olha de novo no próximo intervalo
+                    if ("0-0".equals(claimCursor)) nextClaimAt = now + CLAIM_INTERVAL_MS;
+                } else {
+                    messages = redis.xreadgroup(CONSUMER, XReadArgs.Builder.block(BLOCK_MS).count(BATCH),
+                            StreamOffset.lastConsumed(STREAM_KEY));
+                }
+                if (messages == null || messages.isEmpty()) continue;
+
+                String[] ids = new String[messages.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    StreamMessage<String, String> message = messages.get(i);
+                    ids[i] = message.getId();
+                    PaymentRequest payment = decode(message.getBody());
+                    if (payment != null) {
+                        sink.accept(payment);
+                        consumed.increment();
+                    }
+                }
+                redis.xack(STREAM_KEY, GROUP, ids);
+                redis.xdel(STREAM_KEY, ids); // Stream não cresce: entregue = removido
+            } catch (RedisCommandExecutionException e) {
+                // NOGROUP: o Redis foi reiniciado/limpo - recria o grupo
+                if (e.getMessage() != null && e.getMessage().startsWith("NOGROUP")) groupReady = false;
+                errors.increment();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ERROR_BACKOFF_MS));
+            } catch (Exception e) {
+                errors.increment();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ERROR_BACKOFF_MS));
+            }
+        }
+    }
+
+    private static void announceRoom(RedisCommands<String, String> redis, boolean room, long now) {
+        Long others = redis.eval(ROOM_SCRIPT, ScriptOutputType.INTEGER, new String[] { ROOM_KEY },
+                Long.toString(now), Long.toString(now + ROOM_TTL_MS), room ? "1" : "0", RedisAsyncManager.INSTANCE_ID,
+                Long.toString(ROOM_TTL_MS));
+        peerRoomUntil = others != null && others > 0 ? now + ROOM_TTL_MS : 0;
+    }
+
+    private static void createGroup(RedisCommands<String, String> redis) {
+        try {
+            redis.xgroupCreate(StreamOffset.from(STREAM_KEY, "0"), GROUP, XGroupCreateArgs.Builder.mkstream());
+        } catch (RedisCommandExecutionException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) throw e; // Já existe: ok
+        }
+    }
+
+    // Entrada apagada (XAUTOCLAIM devolve corpo vazio) ou malformada: só confirma
+    private static PaymentRequest decode(Map<String, String> body) {
+        if (body == null) return null;
+        String h = body.get("h"), l = body.get("l"), c = body.get("c"), t = body.get("t");
+        if (h == null || l == null || c == null || t == null) return null;
+        try {
+            return new PaymentRequest(Long.parseLong(h), Long.parseLong(l), Long.parseLong(c), Long.parseLong(t));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package src.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+import src.metrics.Counter;
+import src.metrics.Metrics;
+import src.model.PaymentProcessorSummary;
+
+/**
+ * Resumo sem janela mantido pronto (modo redis): espelho dos totais dos
+ * buckets de summary. No start() os totais são lidos do Redis junto com uma
+ * versão, atomicamente; depois disso cada lote do script de registro publica
+ * o que acabou de somar aos buckets com a versão seguinte. O total sem janela
+ * é sempre o que as consultas com janela somariam - pagamento que não chegou
+ * ao Redis não aparece em nenhuma das duas.
+ *
+ * Pub/sub perde mensagem numa reconexão: versão fora de sequência tira o
+ * snapshot de sincronia e força uma nova leitura; enquanto isso json() devolve
+ * null e o GET cai na consulta normal ao Redis. O JSON só é remontado quando
+ * alguém lê depois de uma mudança, nunca por pagamento.
+ */
+final class SummarySnapshot {
+    private static final int PROCESSORS = PaymentSummaryEngine.PROCESSORS.length;
+    // Deltas guardados enquanto a leitura não volta - passou disso descarta, e o buraco força outra leitura
+    private static final int MAX_PENDING = 4096;
+    private static final long SEED_RETRY_MS = 100;
+
+    private static final Counter seeds = Metrics.counter("payments_summary_seeds_total",
+            "Leituras completas dos totais no Redis (boot ou delta perdido)", "");
+    private static final Counter errors = Metrics.counter("payments_errors_total", "Exceções engolidas por estágio",
+            "stage=\"summary_snapshot\"");
+
+    private static final Object lock = new Object();
+    // Protegidos por lock; version -1 = fora de sincronia
+    private static final long[] count = new long[PROCESSORS];
+    private static final long[] cents = new long[PROCESSORS];
+    private static final ArrayDeque<long[]> pending = new ArrayDeque<>();
+    private static long version = -1;
+
+    private static volatile byte[] json;
+    private static volatile boolean dirty;
+    private static volatile boolean seedWanted;
+    private static volatile Thread seeder;
+    private static volatile CompletableFuture<?> subscribed;
+
+    private SummarySnapshot() {
+    }
+
+    /** Corpo pronto do GET /payments-summary sem janela; null se ainda não sincronizou. */
+    static byte[] json() {
+        if (dirty) {
+            synchronized (lock) {
+                if (dirty && version >= 0) {
+                    json = render();
+                    dirty = false;
+                }
+            }
+        }
+        return json;
+    }
+
+    /** Assina os deltas e lê os totais atuais. Só no modo redis. */
+    static void start() {
+        StatefulRedisPubSubConnection<String, String> subscriber = RedisAsyncManager.connectPubSub();
+        subscriber.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                try {
+                    applyDelta(parse(message));
+                } catch (RuntimeException e) {
+                    errors.increment();
+                }
+            }
+        });
+        // Lettuce reassina sozinho depois de reconectar; o que se perder no meio aparece como buraco de versão
+        subscribed = subscriber.async().subscribe(RedisAsyncManager.SUMMARY_CHANNEL).toCompletableFuture();
+
+        Thread thread = new Thread(SummarySnapshot::seedLoop, "summary-seed");
+        thread.setDaemon(true);
+        seeder = thread;
+        seedWanted = true;
+        thread.start();
+    }
+
+    // Lê só depois da assinatura valer: delta publicado entre a leitura e a assinatura se perderia
+    private static void seedLoop() {
+        while (true) {
+            if (!seedWanted) {
+                LockSupport.park();
+                continue;
+            }
+            seedWanted = false;
+            try {
+                subscribed.join();
+                applySeed(RedisAsyncManager.summaryTotals().join());
+                seeds.increment();
+            } catch (Exception e) {
+                errors.increment();
+                seedWanted = true;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SEED_RETRY_MS));
+            }
+        }
+    }
+
+    private static void requestSeed() {
+        seedWanted = true;
+        LockSupport.unpark(seeder);
+    }
+
+    // [versão, count0, cents0, count1, cents1]
+    private static void applySeed(long[] totals) {
+        boolean synced;
+        synchronized (lock) {
+            version = totals[0];
+            for (int p = 0; p < PROCESSORS; p++) {
+                count[p] = totals[1 + p * 2];
+                cents[p] = totals[2 + p * 2];
+            }
+            // Chegaram durante a leitura: até a versão lida já estão nos totais
+            long[] delta;
+            while ((delta = pending.poll()) != null) {
+                if (delta[0] > version && !apply(delta)) {
+                    desync();
+                    break;
+                }
+            }
+            synced = version >= 0;
+            dirty = synced;
+        }
+        if (!synced) requestSeed();
+    }
+
+    private static void applyDelta(long[] delta) {
+        synchronized (lock) {
+            if (version < 0) {
+                if (pending.size() < MAX_PENDING) pending.add(delta);
+                return;
+            }
+            if (apply(delta)) {
+                dirty = true;
+                return;
+            }
+            desync();
+            pending.add(delta);
+        }
+        requestSeed();
+    }
+
+    // Só a versão seguinte encaixa - qualquer outra é mensagem perdida ou Redis que reiniciou o contador
+    private static boolean apply(long[] delta) {
+        if (delta[0] != version + 1) return false;
+        for (int p = 0; p < PROCESSORS; p++) {
+            count[p] += delta[1 + p * 2];
+            cents[p] += delta[2 + p * 2];
+        }
+        version = delta[0];
+        return true;
+    }
+
+    private static void desync() {
+        version = -1;
+        json = null;
+        dirty = false;
+    }
+
+    // "versão count0 cents0 count1 cents1", como o script de registro publica
+    private static long[] parse(String message) {
+        String[] parts = message.split(" ");
+        if (parts.length != 1 + PROCESSORS * 2) throw new IllegalArgumentException("bad summary delta");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Long.parseLong(parts[i]);
+        }
+        return values;
+    }
+
+    private static byte[] render() {
+        PaymentProcessorSummary[] summaries = new PaymentProcessorSummary[PROCESSORS];
+        for (int p = 0; p < PROCESSORS; p++) {
+            summaries[p] = new PaymentProcessorSummary(count[p], cents[p]);
+        }
+        return PaymentSummaryEngine.toJson(summaries).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package src.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import src.model.PaymentRequest;
+
+class PaymentRingTest {
+
+    @Test
+    void rejectsCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new PaymentRing(6));
+    }
+
+    @Test
+    void keepsFifoOrderAndFieldsAcrossWrapArounds() {
+        PaymentRing ring = new PaymentRing(4);
+        long next = 0;
+        long expected = 0;
+        // Cada volta enche, confirma o cheio e esvazia - os números de sequência dão centenas de voltas
+        for (int round = 0; round < 500; round++) {
+            int batch = 1 + round % 4;
+            for (int i = 0; i < batch; i++, next++) {
+                assertTrue(ring.offer(next, ~next, next * 100, 1_000 + next, (int) (next % 3)));
+            }
+            assertEquals(batch, ring.size());
+            if (batch == 4) assertFalse(ring.offer(-1, -1, 1, 1, 0), "cheia");
+
+            for (int i = 0; i < batch; i++, expected++) {
+                PaymentRequest payment = ring.poll();
+                assertEquals(expected, payment.idHigh);
+                assertEquals(~expected, payment.idLow);
+                assertEquals(expected * 100, payment.amountCents);
+                assertEquals(1_000 + expected, payment.requestedAtMillis);
+                assertEquals(expected % 3, payment.attempts);
+            }
+            assertNull(ring.poll());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    void takeWakesUpOnOffer() throws Exception {
+        PaymentRing ring = new PaymentRing(8);
+        CompletableFuture<PaymentRequest> taken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ring.take();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // Tempo de sobra para o consumidor passar do spin/yield e dormir na Condition
+        Thread.sleep(50);
+        assertFalse(taken.isDone());
+
+        ring.offer(new PaymentRequest(7, 8, 900, 1_234));
+        PaymentRequest payment = taken.get(1, TimeUnit.SECONDS);
+        assertEquals(7, payment.idHigh);
+        assertEquals(8, payment.idLow);
+    }
+
+    @Test
+    void deliversEachPaymentExactlyOnceUnderContention() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        int total = producers * perProducer;
+        // Anel pequeno: força cheio, vazio e muitas voltas com todo mundo disputando os mesmos slots
+        PaymentRing ring = new PaymentRing(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicLong remaining = new AtomicLong(total);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int id = first; id < first + perProducer; id++) {
+                        while (!ring.offer(id, id, 1, 1, 0)) {
+                            Thread.yield(); // Com poucos núcleos, girar sem ceder atrasa quem liberaria o slot
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int c = 0; c < consumers; c++) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    while (remaining.get() > 0) {
+                        PaymentRequest payment = ring.poll();
+                        if (payment == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        assertEquals(payment.idHigh, payment.idLow, "campos de slots diferentes misturados");
+                        seen.incrementAndGet((int) payment.idHigh);
+                        remaining.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int id = 0; id < total; id++) {
+            assertEquals(1, seen.get(id), "pagamento " + id);
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,181 @@
+package src.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalFilesTest {
+    private static final int SEGMENT_RECORDS = 4;
+
+    @TempDir
+    Path dir;
+
+    // Ids aleatórios: o filtro de dedup é estático e compartilhado entre os testes
+    private final long idHigh = ThreadLocalRandom.current().nextLong();
+
+    @Test
+    void recoversEverythingWrittenBeforeCrash() throws IOException {
+        JournalFiles crashed = new JournalFiles(dir, SEGMENT_RECORDS);
+        crashed.recover();
+        write(crashed, 0, 10);
+
+        // Sem flush nem close: o próximo processo só tem o que está nos arquivos
+        JournalFiles recovered = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(10, recovered.recover());
+        assertEquals(ids(0, 10), scanAll(recovered));
+        assertFalse(IdempotencyGuard.firstSeen(idHigh, 9), "replay deve repor o filtro de dedup");
+    }
+
+    @Test
+    void stopsAtTruncatedRecord() throws IOException {
+        JournalFiles crashed = new JournalFiles(dir, SEGMENT_RECORDS);
+        crashed.recover();
+        write(crashed, 0, 3);
+
+        // Disco perdeu o fim do segmento no meio do terceiro registro
+        truncate(only("segment-"), 2 * JournalFiles.RECORD_SIZE + 10);
+
+        JournalFiles recovered = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(2, recovered.recover());
+        assertEquals(ids(0, 2), scanAll(recovered));
+    }
+
+    @Test
+    void compactsClosedSegmentsIntoBase() throws IOException {
+        JournalFiles journal = new JournalFiles(dir, SEGMENT_RECORDS);
+        journal.recover();
+        int total = SEGMENT_RECORDS * JournalFiles.COMPACT_SEGMENTS + 1;
+        write(journal, 0, total);
+        journal.compactIfNeeded();
+
+        String base = only("base-").getFileName().toString();
+        assertTrue(base.endsWith(String.format("-%012d.journal", SEGMENT_RECORDS * JournalFiles.COMPACT_SEGMENTS)),
+                base);
+        assertEquals(1, names("segment-").size(), "só o ativo sobra");
+        assertEquals(ids(0, total), scanAll(journal));
+
+        JournalFiles recovered = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(total, recovered.recover());
+        assertEquals(ids(0, total), scanAll(recovered));
+    }
+
+    @Test
+    void dropsAppendInterruptedBeforeRename() throws IOException {
+        JournalFiles journal = new JournalFiles(dir, SEGMENT_RECORDS);
+        journal.recover();
+        int compacted = SEGMENT_RECORDS * JournalFiles.COMPACT_SEGMENTS;
+        write(journal, 0, compacted + 1);
+        journal.compactIfNeeded();
+
+        // Anexo seguinte escreveu na base mas caiu antes do rename: o excesso ainda está nos segmentos
+        Path base = only("base-");
+        try (FileChannel channel = FileChannel.open(base, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(3 * JournalFiles.RECORD_SIZE).put(0, new byte[] { 1 }),
+                    channel.size());
+        }
+
+        JournalFiles recovered = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(compacted + 1, recovered.recover());
+        assertEquals((long) compacted * JournalFiles.RECORD_SIZE, Files.size(only("base-")));
+    }
+
+    @Test
+    void shortBaseIsRenamedSoNextAppendLeavesNoGap() throws IOException {
+        JournalFiles journal = new JournalFiles(dir, SEGMENT_RECORDS);
+        journal.recover();
+        int compacted = SEGMENT_RECORDS * JournalFiles.COMPACT_SEGMENTS;
+        write(journal, 0, compacted + 1);
+        journal.compactIfNeeded();
+
+        truncate(only("base-"), (compacted - 3L) * JournalFiles.RECORD_SIZE);
+
+        JournalFiles recovered = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(compacted - 3 + 1, recovered.recover());
+        assertTrue(only("base-").getFileName().toString().endsWith(String.format("-%012d.journal", compacted - 3)));
+
+        write(recovered, 100, 100 + compacted);
+        recovered.compactIfNeeded();
+
+        List<Long> expected = ids(0, compacted - 3);
+        expected.add((long) compacted);
+        expected.addAll(ids(100, 100 + compacted));
+        assertEquals(expected, scanAll(recovered));
+
+        JournalFiles again = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals(expected.size(), again.recover());
+        assertEquals(expected, scanAll(again));
+    }
+
+    @Test
+    void resetDropsPaymentsOfAnotherRun() throws IOException {
+        JournalFiles journal = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertNull(journal.runId());
+        journal.reset("run-a:0");
+        journal.recover();
+        write(journal, 0, 6);
+
+        JournalFiles next = new JournalFiles(dir, SEGMENT_RECORDS);
+        assertEquals("run-a:0", next.runId());
+        next.reset("run-b:0");
+        assertEquals(0, next.recover());
+        assertEquals("run-b:0", next.runId());
+
+        next.markRun("run-b:1");
+        assertEquals("run-b:1", next.runId());
+    }
+
+    private void write(JournalFiles journal, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            journal.append(idHigh, i, 1_000 + i, 1990, i & 1);
+        }
+    }
+
+    private static List<Long> ids(int from, int to) {
+        List<Long> ids = new ArrayList<>();
+        for (long i = from; i < to; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    private static List<Long> scanAll(JournalFiles journal) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (Path file : journal.files()) {
+            JournalFiles.scan(file, (high, low, millis, cents, processor) -> ids.add(low));
+        }
+        return ids;
+    }
+
+    private List<Path> names(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private Path only(String prefix) throws IOException {
+        List<Path> files = names(prefix);
+        assertEquals(1, files.size(), files.toString());
+        return files.get(0);
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package src.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import src.model.Amounts;
+import src.model.Uuids;
+
+class PaymentBodyScannerTest {
+    private static final String ID = "4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3";
+
+    private final PaymentBodyScanner scanner = new PaymentBodyScanner();
+
+    @Test
+    void scansCanonicalBody() {
+        assertTrue(scan("{\"correlationId\": \"" + ID + "\", \"amount\": 19.90}"));
+        assertEquals(ID, Uuids.toString(scanner.idHigh, scanner.idLow));
+        assertEquals(1990, scanner.amountCents);
+    }
+
+    @Test
+    void acceptsAnyKeyOrderWhitespaceAndQuotedAmount() {
+        assertTrue(scan(" {\n\t\"amount\" : \"0.5\" ,\"correlationId\":\"" + ID + "\"}\r\n"));
+        assertEquals(50, scanner.amountCents);
+        assertTrue(scan("{\"correlationId\":\"" + ID + "\",\"amount\":7}"));
+        assertEquals(700, scanner.amountCents);
+        assertTrue(scan("{\"correlationId\":\"" + ID + "\",\"amount\":1.2300}"));
+        assertEquals(123, scanner.amountCents);
+    }
+
+    @Test
+    void rejectsMalformedAmounts() {
+        for (String amount : new String[] { "019.90", "1.", ".5", "1.001", "1e2", "-1", "0", "0.00", "\"1.5",
+                "1,5", "" }) {
+            assertFalse(scan("{\"correlationId\":\"" + ID + "\",\"amount\":" + amount + "}"), amount);
+        }
+        long over = Amounts.MAX_CENTS / 100 + 1;
+        assertFalse(scan("{\"correlationId\":\"" + ID + "\",\"amount\":" + over + "}"));
+    }
+
+    @Test
+    void rejectsMalformedOrUppercaseIds() {
+        assertFalse(scan("{\"correlationId\":\"" + ID.toUpperCase() + "\",\"amount\":1}"));
+        assertFalse(scan("{\"correlationId\":\"" + ID.replace('-', '_') + "\",\"amount\":1}"));
+        assertFalse(scan("{\"correlationId\":\"" + ID.substring(1) + "\",\"amount\":1}"));
+        assertFalse(scan("{\"correlationId\":\"" + ID.replace('a', 'g') + "\",\"amount\":1}"));
+    }
+
+    @Test
+    void rejectsMissingOrRepeatedKeys() {
+        assertFalse(scan("{\"correlationId\":\"" + ID + "\"}"));
+        assertFalse(scan("{\"amount\":1}"));
+        assertFalse(scan("{\"correlationId\":\"" + ID + "\",\"amount\":1,\"amount\":2}"));
+        assertFalse(scan("{\"correlationId\":\"" + ID + "\",\"amount\":1"));
+        assertFalse(scan("{\"correlationId\":\"" + ID + "\",\"amount\":1} x"));
+    }
+
+    @Test
+    void skipsValidUnknownValues() {
+        for (String value : new String[] { "true", "false", "null", "0", "-0.5", "12e3", "1.5E-7", "-2e+10",
+                "\"x\\\"y\"", "[]", "{}", "[1, \"a\", {\"b\": [null]}]", "{\"k\": {\"n\": false}}" }) {
+            assertTrue(scan("{\"extra\":" + value + ",\"correlationId\":\"" + ID + "\",\"amount\":1}"), value);
+        }
+    }
+
+    @Test
+    void rejectsInvalidUnknownValues() {
+        for (String value : new String[] { "tru", "truex", "nul", "False", "abc", "1e", "1e+", "01", "-", "1.",
+                ".1", "+1", "1-2", "1..2", "[1,]", "{\"a\"}", "\"open" }) {
+            assertFalse(scan("{\"extra\":" + value + ",\"correlationId\":\"" + ID + "\",\"amount\":1}"), value);
+        }
+    }
+
+    @Test
+    void boundsNestingDepth() {
+        String deep = "[".repeat(17) + "]".repeat(17);
+        assertFalse(scan("{\"extra\":" + deep + ",\"correlationId\":\"" + ID + "\",\"amount\":1}"));
+        String shallow = "[".repeat(16) + "]".repeat(16);
+        assertTrue(scan("{\"extra\":" + shallow + ",\"correlationId\":\"" + ID + "\",\"amount\":1}"));
+    }
+
+    private boolean scan(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        return scanner.scan(bytes, bytes.length);
+    }
+}